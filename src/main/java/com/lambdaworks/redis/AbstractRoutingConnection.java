@@ -0,0 +1,283 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+import com.lambdaworks.redis.output.IntegerOutput;
+import com.lambdaworks.redis.output.StatusOutput;
+import com.lambdaworks.redis.output.ValueListOutput;
+import com.lambdaworks.redis.protocol.*;
+
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An asynchronous connection that sends each command over one of several
+ * underlying {@link RedisAsyncConnection connections}. Subclasses choose the
+ * connection for a command, usually from its first key. Commands routed to
+ * different connections are written in parallel.
+ *
+ * MGET, MSET and DEL are split by {@link #partition} into one sub-command per
+ * partition and the replies are merged in the original key order by a
+ * {@link FanOutCommand}.
+ *
+ * MULTI/EXEC blocks are not supported since the commands of a block may be
+ * routed to different servers. {@link #transaction() Transactions} are sent
+ * to one server when all of their commands are routed to the same connection.
+ * AUTH and SELECT are sent over every underlying connection.
+ *
+ * @author Will Glozer
+ */
+public abstract class AbstractRoutingConnection<K, V> extends RedisAsyncConnection<K, V> {
+    private volatile String password;
+    private volatile int db;
+
+    /**
+     * Initialize a new routing connection.
+     *
+     * @param codec   Codec used to encode/decode keys and values.
+     * @param timeout Maximum time to wait for a response.
+     * @param unit    Unit of time for the timeout.
+     */
+    public AbstractRoutingConnection(RedisCodec<K, V> codec, long timeout, TimeUnit unit) {
+        super(new LinkedBlockingQueue<Command<K, V, ?>>(), codec, timeout, unit);
+    }
+
+    /**
+     * Choose the connection a command is sent over.
+     *
+     * @param cmd   Command to send.
+     *
+     * @return The connection.
+     */
+    protected abstract RedisAsyncConnection<K, V> route(Command<K, V, ?> cmd);
+
+    /**
+     * Get the partition of a key. Keys of one partition may be sent in a
+     * single multi-key command.
+     *
+     * @param key   Encoded key.
+     *
+     * @return An object identifying the partition.
+     */
+    protected abstract Object partition(byte[] key);
+
+    /**
+     * Get all underlying connections.
+     *
+     * @return The connections.
+     */
+    protected abstract Collection<? extends RedisAsyncConnection<K, V>> connections();
+
+    @Override
+    public <T> Command<K, V, T> dispatch(CommandType type, CommandOutput<K, V, T> output, CommandArgs<K, V> args) {
+        return dispatch(newCommand(type, output, args));
+    }
+
+    @Override
+    public <T> Command<K, V, T> dispatch(Command<K, V, T> cmd) {
+        return route(cmd).dispatch(cmd);
+    }
+
+    @Override
+    public void dispatchAll(List<? extends Command<K, V, ?>> cmds) {
+        RedisAsyncConnection<K, V> connection = null;
+        for (Command<K, V, ?> cmd : cmds) {
+            if (cmd.getArgs() == null || cmd.getArgs().firstKey() == null) continue;
+            RedisAsyncConnection<K, V> routed = route(cmd);
+            if (connection != null && routed != connection) {
+                throw new RedisException("Commands of a transaction are routed to different connections");
+            }
+            connection = routed;
+        }
+        if (connection == null) connection = route(cmds.get(0));
+        connection.dispatchAll(cmds);
+    }
+
+    @Override
+    public ListenableFuture<Long> del(K... keys) {
+        List<List<Integer>> parts = partition(keys);
+        if (parts.size() < 2) return super.del(keys);
+
+        FanOutCommand<K, V, Long, Long> cmd = new FanOutCommand<K, V, Long, Long>(CommandType.DEL, new IntegerOutput<K, V>(codec), parts.size()) {
+            private long count;
+
+            @Override
+            protected void merge(int index, Long value) {
+                count += value;
+            }
+
+            @Override
+            protected void finish() {
+                output.set(count);
+            }
+        };
+
+        for (int i = 0; i < parts.size(); i++) {
+            CommandArgs<K, V> args = new CommandArgs<K, V>(codec);
+            for (int k : parts.get(i)) {
+                args.addKey(keys[k]);
+            }
+            dispatch(cmd.join(i, newCommand(CommandType.DEL, new IntegerOutput<K, V>(codec), args)));
+        }
+
+        return cmd;
+    }
+
+    @Override
+    public ListenableFuture<List<V>> mget(K... keys) {
+        final List<List<Integer>> parts = partition(keys);
+        if (parts.size() < 2) return super.mget(keys);
+
+        final List<V> values = new ArrayList<V>(Collections.<V>nCopies(keys.length, null));
+        FanOutCommand<K, V, List<V>, List<V>> cmd = new FanOutCommand<K, V, List<V>, List<V>>(CommandType.MGET, new ValueListOutput<K, V>(codec), parts.size()) {
+            @Override
+            protected void merge(int index, List<V> value) {
+                List<Integer> indexes = parts.get(index);
+                for (int i = 0; i < indexes.size(); i++) {
+                    values.set(indexes.get(i), value.get(i));
+                }
+            }
+
+            @Override
+            protected void finish() {
+                output.get().addAll(values);
+            }
+        };
+
+        for (int i = 0; i < parts.size(); i++) {
+            CommandArgs<K, V> args = new CommandArgs<K, V>(codec);
+            for (int k : parts.get(i)) {
+                args.addKey(keys[k]);
+            }
+            dispatch(cmd.join(i, newCommand(CommandType.MGET, new ValueListOutput<K, V>(codec), args)));
+        }
+
+        return cmd;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ListenableFuture<String> mset(Map<K, V> map) {
+        K[] keys = (K[]) map.keySet().toArray();
+        List<List<Integer>> parts = partition(keys);
+        if (parts.size() < 2) return super.mset(map);
+
+        FanOutCommand<K, V, String, String> cmd = new FanOutCommand<K, V, String, String>(CommandType.MSET, new StatusOutput<K, V>(codec), parts.size()) {
+            @Override
+            protected void merge(int index, String value) {
+                // nothing to merge
+            }
+
+            @Override
+            protected void finish() {
+                output.set(Charsets.buffer("OK"));
+            }
+        };
+
+        for (int i = 0; i < parts.size(); i++) {
+            CommandArgs<K, V> args = new CommandArgs<K, V>(codec);
+            for (int k : parts.get(i)) {
+                args.addKey(keys[k]).addValue(map.get(keys[k]));
+            }
+            dispatch(cmd.join(i, newCommand(CommandType.MSET, new StatusOutput<K, V>(codec), args)));
+        }
+
+        return cmd;
+    }
+
+    /**
+     * Authenticate every underlying connection, and connections opened later
+     * through {@link #restore}.
+     *
+     * @param password  Password.
+     *
+     * @return The status reply.
+     */
+    @Override
+    public String auth(String password) {
+        this.password = password;
+        String status = "OK";
+        for (RedisAsyncConnection<K, V> connection : connections()) {
+            status = connection.auth(password);
+            if (!"OK".equals(status)) break;
+        }
+        return status;
+    }
+
+    /**
+     * Select the database on every underlying connection, and connections
+     * opened later through {@link #restore}.
+     *
+     * @param db    Database index.
+     *
+     * @return The status reply.
+     */
+    @Override
+    public String select(int db) {
+        this.db = db;
+        String status = "OK";
+        for (RedisAsyncConnection<K, V> connection : connections()) {
+            status = connection.select(db);
+            if (!"OK".equals(status)) break;
+        }
+        return status;
+    }
+
+    @Override
+    public ListenableFuture<String> multi() {
+        throw new RedisException("MULTI is not supported on routed connections");
+    }
+
+    @Override
+    public void setTimeout(long timeout, TimeUnit unit) {
+        super.setTimeout(timeout, unit);
+        for (RedisAsyncConnection<K, V> connection : connections()) {
+            connection.setTimeout(timeout, unit);
+        }
+    }
+
+    /**
+     * Apply the password and database sent with AUTH and SELECT to a new
+     * underlying connection before any command is sent over it.
+     *
+     * @param connection    New connection.
+     *
+     * @return The connection.
+     */
+    protected RedisAsyncConnection<K, V> restore(RedisAsyncConnection<K, V> connection) {
+        connection.setSession(password, db);
+        return connection;
+    }
+
+    /**
+     * Group the indexes of keys by {@link #partition}, in order of first
+     * appearance.
+     *
+     * @param keys  Keys to group.
+     *
+     * @return Key indexes of each partition.
+     */
+    protected List<List<Integer>> partition(K[] keys) {
+        Map<Object, List<Integer>> parts = new LinkedHashMap<Object, List<Integer>>();
+        for (int i = 0; i < keys.length; i++) {
+            Object partition = partition(codec.encodeKey(keys[i]));
+            List<Integer> indexes = parts.get(partition);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                parts.put(partition, indexes);
+            }
+            indexes.add(i);
+        }
+        return new ArrayList<List<Integer>>(parts.values());
+    }
+
+    @Override
+    public synchronized void close() {
+        for (RedisAsyncConnection<K, V> connection : connections()) {
+            connection.close();
+        }
+    }
+}
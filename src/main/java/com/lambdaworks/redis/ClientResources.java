@@ -0,0 +1,126 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Threads shared by one or more {@link RedisClient} instances: the netty event
+ * loops that perform I/O, the timer used for reconnects and health checks, and
+ * the executor that runs promise callbacks. The native epoll transport is used
+ * when it is available, otherwise NIO. Threads are only started when a
+ * resource is first used.
+ *
+ * Clients do not shut down resources passed to them, call {@link #shutdown}
+ * once all clients sharing the resources have been shut down.
+ *
+ * @author Will Glozer
+ */
+public class ClientResources {
+    private EventLoopGroup group;
+    private Class<? extends SocketChannel> channelClass;
+    private HashedWheelTimer timer;
+    private ExecutorService executor;
+    private int ioThreads;
+    private int callbackThreads;
+
+    /**
+     * Create new resources with the default number of I/O and callback threads.
+     */
+    public ClientResources() {
+        this(0, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create new resources.
+     *
+     * @param ioThreads         Number of event loop threads, or 0 for the netty default.
+     * @param callbackThreads   Number of threads running promise callbacks.
+     */
+    public ClientResources(int ioThreads, int callbackThreads) {
+        this.ioThreads       = ioThreads;
+        this.callbackThreads = callbackThreads;
+        this.channelClass    = Epoll.isAvailable() ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * Get the event loop group performing I/O for client channels.
+     *
+     * @return The event loop group.
+     */
+    public synchronized EventLoopGroup eventLoopGroup() {
+        if (group == null) {
+            if (channelClass == EpollSocketChannel.class) {
+                group = new EpollEventLoopGroup(ioThreads);
+            } else {
+                group = new NioEventLoopGroup(ioThreads);
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Get the socket channel type matching the {@link #eventLoopGroup()}.
+     *
+     * @return EpollSocketChannel when the native transport is available, otherwise NioSocketChannel.
+     */
+    public Class<? extends SocketChannel> channelClass() {
+        return channelClass;
+    }
+
+    /**
+     * Get the Unix domain socket channel type matching the {@link #eventLoopGroup()}.
+     *
+     * @return EpollDomainSocketChannel.
+     *
+     * @throws RedisException if the native epoll transport is not available.
+     */
+    public Class<? extends Channel> domainSocketChannelClass() {
+        if (channelClass != EpollSocketChannel.class) {
+            throw new RedisException("Unix domain sockets require the native epoll transport");
+        }
+        return EpollDomainSocketChannel.class;
+    }
+
+    /**
+     * Get the timer used for delayed reconnects and health checks.
+     *
+     * @return The timer.
+     */
+    public synchronized Timer timer() {
+        if (timer == null) timer = new HashedWheelTimer();
+        return timer;
+    }
+
+    /**
+     * Get the executor that runs promise callbacks.
+     *
+     * @return The callback executor.
+     */
+    public synchronized ExecutorService executor() {
+        if (executor == null) executor = Executors.newFixedThreadPool(callbackThreads);
+        return executor;
+    }
+
+    /**
+     * Stop all threads. The resources must not be used after shutdown.
+     */
+    public synchronized void shutdown() {
+        if (group != null) group.shutdownGracefully().syncUninterruptibly();
+        if (timer != null) timer.stop();
+        if (executor != null) executor.shutdown();
+    }
+}
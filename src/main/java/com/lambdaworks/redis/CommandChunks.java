@@ -0,0 +1,75 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.protocol.CommandArgs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the arguments of a variadic write into several {@link CommandArgs}
+ * of bounded size, each starting with the same key. Arguments are added in
+ * groups, such as a field and its value, and a group is never split across
+ * chunks. A chunk is closed when the next group would exceed the argument
+ * limit or once it holds at least the byte limit.
+ *
+ * @author Will Glozer
+ */
+class CommandChunks<K, V> {
+    private RedisCodec<K, V> codec;
+    private K key;
+    private int maxArgs;
+    private int maxBytes;
+    private List<CommandArgs<K, V>> chunks;
+    private CommandArgs<K, V> current;
+
+    /**
+     * Create a new chunker.
+     *
+     * @param codec     Codec used to encode keys and values.
+     * @param key       Key added first to each chunk, or null.
+     * @param maxArgs   Maximum number of args per chunk, or 0 for no limit.
+     * @param maxBytes  Maximum encoded size of a chunk, or 0 for no limit.
+     */
+    CommandChunks(RedisCodec<K, V> codec, K key, int maxArgs, int maxBytes) {
+        this.codec    = codec;
+        this.key      = key;
+        this.maxArgs  = maxArgs;
+        this.maxBytes = maxBytes;
+        this.chunks   = new ArrayList<CommandArgs<K, V>>();
+    }
+
+    /**
+     * Get the chunk the next group of args is added to.
+     *
+     * @param n Number of args in the group.
+     *
+     * @return The chunk.
+     */
+    CommandArgs<K, V> next(int n) {
+        if (current == null || full(n)) {
+            current = new CommandArgs<K, V>(codec);
+            if (key != null) current.addKey(key);
+            chunks.add(current);
+        }
+        return current;
+    }
+
+    /**
+     * Get all chunks, in order. There is always at least one chunk.
+     *
+     * @return The chunks.
+     */
+    List<CommandArgs<K, V>> list() {
+        if (current == null) next(0);
+        return chunks;
+    }
+
+    private boolean full(int n) {
+        if (current.count() == (key != null ? 1 : 0)) return false;
+        if (maxArgs > 0 && current.count() + n > maxArgs) return true;
+        return maxBytes > 0 && current.size() >= maxBytes;
+    }
+}
@@ -0,0 +1,45 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.protocol.Charsets;
+
+/**
+ * Lua scripts backing the fused operations of {@link RedisAsyncConnection}.
+ * Each script takes one key, then its numeric args, then its values. The
+ * scripts are loaded whenever a connection connects.
+ *
+ * @author Will Glozer
+ */
+final class FusedScript {
+    static final FusedScript GET_OR_SETEX = new FusedScript(
+        "local v = redis.call('GET', KEYS[1]) " +
+        "if v then return v end " +
+        "redis.call('SETEX', KEYS[1], ARGV[1], ARGV[2]) " +
+        "return ARGV[2]");
+
+    static final FusedScript DEL_IF_EQUALS = new FusedScript(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+        "return redis.call('DEL', KEYS[1]) end " +
+        "return 0");
+
+    static final FusedScript LPUSH_TRIM = new FusedScript(
+        "redis.call('LPUSH', KEYS[1], unpack(ARGV, 2)) " +
+        "redis.call('LTRIM', KEYS[1], 0, tonumber(ARGV[1]) - 1) " +
+        "return redis.call('LLEN', KEYS[1])");
+
+    static final FusedScript INCRBY_EXPIRE = new FusedScript(
+        "local n = redis.call('INCRBY', KEYS[1], ARGV[1]) " +
+        "if redis.call('TTL', KEYS[1]) == -1 then redis.call('EXPIRE', KEYS[1], ARGV[2]) end " +
+        "return n");
+
+    static final FusedScript[] ALL = { GET_OR_SETEX, DEL_IF_EQUALS, LPUSH_TRIM, INCRBY_EXPIRE };
+
+    final String source;
+    final String digest;
+
+    private FusedScript(String source) {
+        this.source = source;
+        this.digest = RedisAsyncConnection.digest(source.getBytes(Charsets.ASCII));
+    }
+}
@@ -0,0 +1,200 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.DeferredFuture;
+import com.lambdaworks.redis.concurrent.FailCallback;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Iterates over elements that are read from the server one page at a time.
+ * The next page is requested as soon as the current page arrives, so it is
+ * usually available by the time the current page has been consumed, and at
+ * most two pages are held in memory.
+ *
+ * Elements may instead be passed to a callback with {@link #stream}, which
+ * walks the pages without blocking the calling thread.
+ *
+ * @param <P> Page type.
+ * @param <T> Element type.
+ *
+ * @author Will Glozer
+ */
+public abstract class PageIterator<K, V, P, T> implements Iterator<T> {
+    private long timeout;
+    private TimeUnit unit;
+    private List<T> page;
+    private int position;
+    private ListenableFuture<P> pending;
+    private DeferredFuture<P> reply;
+    private boolean started;
+
+    /**
+     * Initialize a new iterator.
+     *
+     * @param timeout       Maximum time to wait for a page.
+     * @param unit          Unit of time for the timeout.
+     */
+    public PageIterator(long timeout, TimeUnit unit) {
+        this.timeout = timeout;
+        this.unit    = unit;
+        this.page    = Collections.emptyList();
+    }
+
+    /**
+     * Request the page following a page.
+     *
+     * @param previous  Previous page, or null for the first page.
+     *
+     * @return The next page, or null if the previous page was the last.
+     */
+    protected abstract ListenableFuture<P> request(P previous);
+
+    /**
+     * Get the elements of a page.
+     *
+     * @param page  Page.
+     *
+     * @return The elements.
+     */
+    protected abstract List<T> values(P page);
+
+    @Override
+    public boolean hasNext() {
+        start();
+        while (position >= page.size() && pending != null) {
+            P result = await();
+            fetch(request(result));
+            page     = values(result);
+            position = 0;
+        }
+        return position < page.size();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return page.get(position++);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Pass every element to a callback, one page at a time, without blocking
+     * the calling thread. The callback is never called concurrently. May not
+     * be combined with iteration.
+     *
+     * @param callback  Callback called for each element.
+     *
+     * @return A future number of elements passed to the callback.
+     */
+    public synchronized ListenableFuture<Long> stream(Callback<T> callback) {
+        if (started) throw new IllegalStateException("Iteration has already started");
+        started = true;
+
+        DeferredFuture<Long> done = new DeferredFuture<Long>();
+        new Page(request(null), callback, done, 0).listen();
+        return done;
+    }
+
+    private synchronized void start() {
+        if (started) return;
+        started = true;
+        fetch(request(null));
+    }
+
+    private void fetch(ListenableFuture<P> future) {
+        pending = future;
+        if (future == null) return;
+
+        final DeferredFuture<P> reply = new DeferredFuture<P>();
+        future.then(new Callback<P>() {
+            @Override
+            public void call(P result) {
+                reply.resolve(result);
+            }
+        }, new FailCallback() {
+            @Override
+            public void fail(String error) {
+                reply.failure(error);
+            }
+        });
+        this.reply = reply;
+    }
+
+    private P await() {
+        try {
+            return reply.get(timeout, unit);
+        } catch (TimeoutException e) {
+            pending.cancel(true);
+            throw new RedisException("Command timed out");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RedisException) throw (RedisException) cause;
+            throw new RedisException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            throw new RedisCommandInterruptedException(e);
+        }
+    }
+
+    private class Page implements Callback<P>, FailCallback {
+        private ListenableFuture<P> future;
+        private Callback<T> callback;
+        private DeferredFuture<Long> done;
+        private long count;
+        private AtomicBoolean fired;
+
+        Page(ListenableFuture<P> future, Callback<T> callback, DeferredFuture<Long> done, long count) {
+            this.future   = future;
+            this.callback = callback;
+            this.done     = done;
+            this.count    = count;
+            this.fired    = new AtomicBoolean();
+        }
+
+        void listen() {
+            future.then(this, this);
+        }
+
+        @Override
+        public void call(P result) {
+            if (!fired.compareAndSet(false, true)) return;
+
+            List<T> values = values(result);
+            ListenableFuture<P> following = request(result);
+
+            try {
+                for (T value : values) {
+                    callback.call(value);
+                }
+            } catch (RuntimeException e) {
+                done.failure(e);
+                return;
+            }
+
+            if (following != null) {
+                new Page(following, callback, done, count + values.size()).listen();
+            } else {
+                done.resolve(count + values.size());
+            }
+        }
+
+        @Override
+        public void fail(String error) {
+            if (fired.compareAndSet(false, true)) done.failure(error);
+        }
+    }
+}
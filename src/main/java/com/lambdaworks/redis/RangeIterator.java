@@ -0,0 +1,55 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterates over a list with LRANGE, or a sorted set with ZRANGEBYSCORE ...
+ * LIMIT, in pages of a fixed size, prefetching one page. Elements added or
+ * removed during the iteration may cause elements to be skipped or returned
+ * twice.
+ *
+ * @param <T> Element type.
+ *
+ * @author Will Glozer
+ */
+public abstract class RangeIterator<K, V, T> extends PageIterator<K, V, List<T>, T> {
+    protected int pageSize;
+
+    /**
+     * Initialize a new iterator.
+     *
+     * @param pageSize      Number of elements requested at a time, at least 1.
+     * @param timeout       Maximum time to wait for a page.
+     * @param unit          Unit of time for the timeout.
+     */
+    public RangeIterator(int pageSize, long timeout, TimeUnit unit) {
+        super(timeout, unit);
+        if (pageSize < 1) throw new IllegalArgumentException("pageSize must be positive");
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Request the page following a full page.
+     *
+     * @param previous  Previous page, or null for the first page.
+     *
+     * @return The next page.
+     */
+    protected abstract ListenableFuture<List<T>> range(List<T> previous);
+
+    @Override
+    protected ListenableFuture<List<T>> request(List<T> previous) {
+        if (previous != null && previous.size() < pageSize) return null;
+        return range(previous);
+    }
+
+    @Override
+    protected List<T> values(List<T> page) {
+        return page;
+    }
+}
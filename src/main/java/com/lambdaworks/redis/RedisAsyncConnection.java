@@ -4,7 +4,8 @@ package com.lambdaworks.redis;
 
 import com.lambdaworks.codec.Base16;
 import com.lambdaworks.redis.codec.RedisCodec;
-import com.lambdaworks.redis.concurrent.ListenableFuture;
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.FailCallback;
 import com.lambdaworks.redis.concurrent.ListenableFuture;
 import com.lambdaworks.redis.output.*;
 import com.lambdaworks.redis.protocol.*;
@@ -12,6 +13,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -23,8 +25,12 @@ import static com.lambdaworks.redis.protocol.CommandType.*;
 
 /**
  * An asynchronous thread-safe connection to a redis server. Multiple threads may
- * share one {@link RedisAsyncConnection} provided they avoid blocking and transactional
- * operations such as {@link #blpop} and {@link #multi()}/{@link #exec}.
+ * share one {@link RedisAsyncConnection} provided they avoid {@link #multi()}/{@link #exec}
+ * and use a {@link #transaction()} instead. Blocking operations such as
+ * {@link #blpop} are sent over a connection from the {@link #setBlockingPool
+ * blocking pool}, when one is set, and complete the future returned here.
+ * They are then no longer ordered relative to commands pipelined on this
+ * connection.
  *
  * A {@link ConnectionWatchdog} monitors each connection and reconnects
  * automatically until {@link #close} is called. All pending commands will be
@@ -40,6 +46,16 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
     protected long timeout;
     protected TimeUnit unit;
     protected MultiOutput<K, V> multi;
+    protected Queue<Command<K, V, ?>> backlog;
+    protected CommandSpool spool;
+    protected long heartbeat;
+    protected Executor executor;
+    protected ConnectionWatchdog watchdog;
+    protected RedisConnectionPool<K, V> blockingPool;
+    protected List<RedisScript<K, V>> scripts;
+    protected int chunkArgs;
+    protected int chunkBytes;
+    private SingleFlight<K, V> singleFlight;
     private String password;
     private int db;
     private boolean closed;
@@ -57,6 +73,8 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         this.codec = codec;
         this.timeout = timeout;
         this.unit = unit;
+        this.backlog = new LinkedList<Command<K, V, ?>>();
+        this.scripts = new CopyOnWriteArrayList<RedisScript<K, V>>();
     }
 
     /**
@@ -70,10 +88,106 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         this.unit = unit;
     }
 
+    /**
+     * Spool write commands to the supplied {@link CommandSpool} instead of
+     * holding their args on the heap while the connection is down. Spooled
+     * commands are sent in order once the connection is re-established.
+     *
+     * @param spool Spool for queued write commands, or null to disable spooling.
+     */
+    public synchronized void setSpool(CommandSpool spool) {
+        this.spool = spool;
+    }
+
+    /**
+     * Run the callbacks of promises returned by this connection on the supplied
+     * executor.
+     *
+     * @param executor  Callback executor, or null for the default.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Set the watchdog managing this connection's channel. While no channel has
+     * been established the first dispatched command asks the watchdog to connect.
+     *
+     * @param watchdog  Connection watchdog.
+     */
+    public void setWatchdog(ConnectionWatchdog watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Send blocking commands over connections taken from the supplied pool so
+     * they don't hold up the commands pipelined behind them. Commands are sent
+     * over this connection while a MULTI block is open.
+     *
+     * @param pool  Pool of dedicated connections, or null to send blocking
+     *              commands over this connection.
+     */
+    public void setBlockingPool(RedisConnectionPool<K, V> pool) {
+        this.blockingPool = pool;
+    }
+
+    /**
+     * Split HMSET, MSET, SADD, ZADD and RPUSH commands with many arguments into
+     * several commands of at most maxArgs arguments, or about maxBytes encoded
+     * bytes, so a single huge write does not hold up the server and the other
+     * commands pipelined on this connection. The commands are sent in order and
+     * their replies combined into one future: SADD and ZADD return the sum of
+     * the counts, RPUSH the length of the list after the last command, and
+     * HMSET and MSET return OK when all commands succeed.
+     *
+     * A split write is no longer atomic, other clients may see some chunks
+     * before the rest are applied and a failed chunk does not undo the others.
+     * Commands are never split within a MULTI block or a {@link #transaction()}.
+     *
+     * @param maxArgs   Maximum number of arguments per command, or 0 for no limit.
+     * @param maxBytes  Approximate maximum size of a command in bytes, or 0 for no limit.
+     */
+    public void setChunking(int maxArgs, int maxBytes) {
+        this.chunkArgs  = maxArgs;
+        this.chunkBytes = maxBytes;
+    }
+
+    /**
+     * Combine identical reads in flight, so a read with the same type and args
+     * as one that has been sent and not yet answered completes with its reply
+     * instead of being sent again. Useful when many threads read the same hot
+     * key at once. A read is never combined with a read sent before a write or
+     * any other command on this connection, and each combined read receives
+     * its own copy of list, set and map replies. Reads within a MULTI block or
+     * a {@link #transaction()} are always sent.
+     *
+     * @param enabled   true to combine identical reads.
+     */
+    public synchronized void setSingleFlight(boolean enabled) {
+        this.singleFlight = enabled ? new SingleFlight<K, V>(this) : null;
+    }
+
+    /**
+     * Set the time to wait for the reply to a PING sent when the channel is idle.
+     * The channel is closed, and reconnected, when no reply arrives in time. Idle
+     * periods are detected by an {@link io.netty.handler.timeout.IdleStateHandler}
+     * installed by the {@link RedisClient}.
+     *
+     * @param timeout   Heartbeat timeout.
+     * @param unit      Unit of time for the timeout.
+     */
+    public void setHeartbeatTimeout(long timeout, TimeUnit unit) {
+        this.heartbeat = unit.toMillis(timeout);
+    }
+
     public ListenableFuture<Long> append(K key, V value) {
         return dispatch(APPEND, new IntegerOutput<K, V>(codec), key, value);
     }
 
+    public ListenableFuture<String> asking() {
+        return dispatch(ASKING, new StatusOutput<K, V>(codec));
+    }
+
     public String auth(String password) {
         CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(password);
         Command<K, V, String> cmd = dispatch(AUTH, new StatusOutput<K, V>(codec), args);
@@ -147,7 +261,7 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
     }
 
     public ListenableFuture<String> clientSetname(K name) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(SETNAME).addKey(name);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(SETNAME).addField(name);
         return dispatch(CLIENT, new StatusOutput<K, V>(codec), args);
     }
 
@@ -161,6 +275,11 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(CLIENT, new StatusOutput<K, V>(codec), args);
     }
 
+    public ListenableFuture<String> clusterNodes() {
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(NODES);
+        return dispatch(CLUSTER, new StatusOutput<K, V>(codec), args);
+    }
+
     public ListenableFuture<List<String>> configGet(String parameter) {
         CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(GET).add(parameter);
         return dispatch(CONFIG, new StringListOutput<K, V>(codec), args);
@@ -199,6 +318,19 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(DEL, new IntegerOutput<K, V>(codec), args);
     }
 
+    /**
+     * Delete a key if it holds the expected value, as when releasing a lock,
+     * in one atomic round trip.
+     *
+     * @param key       Key to delete.
+     * @param value     Expected value.
+     *
+     * @return true if the key was deleted.
+     */
+    public ListenableFuture<Boolean> delIfEquals(K key, V value) {
+        return fused(FusedScript.DEL_IF_EQUALS, new BooleanOutput<K, V>(codec), key, new long[0], Collections.singletonList(value));
+    }
+
     public ListenableFuture<String> discard() {
         if (multi != null) {
             multi.cancel();
@@ -231,6 +363,30 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(EVALSHA, output, args);
     }
 
+    /**
+     * Run a registered script with EVALSHA, falling back to EVAL if the server
+     * replies NOSCRIPT.
+     *
+     * @param script    Script to run.
+     * @param keys      Redis keys to pass to the script.
+     * @param values    Values to pass to the script.
+     *
+     * @return The result of the script.
+     */
+    public <T> ListenableFuture<T> evalsha(final RedisScript<K, V> script, final K[] keys, final V... values) {
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec);
+        args.add(script.getDigest()).add(keys.length).addKeys(keys).addValues(values);
+        CommandOutput<K, V, T> output = newScriptOutput(codec, script.getType());
+        if (isQueued()) return dispatch(EVALSHA, output, args);
+        return dispatch(new ScriptCommand<K, V, T>(this, output, args) {
+            @Override
+            protected CommandArgs<K, V> evalArgs() {
+                CommandArgs<K, V> args = new CommandArgs<K, V>(codec);
+                return args.addValue(script.getScript()).add(keys.length).addKeys(keys).addValues(values);
+            }
+        });
+    }
+
     public ListenableFuture<Boolean> exists(K key) {
         return dispatch(EXISTS, new BooleanOutput<K, V>(codec), key);
     }
@@ -268,6 +424,20 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(GET, new ValueOutput<K, V>(codec), key);
     }
 
+    /**
+     * Get the value of a key, or set it to the supplied value with a time to
+     * live if it doesn't exist, in one atomic round trip.
+     *
+     * @param key       Key.
+     * @param seconds   Time to live of a newly set value.
+     * @param value     Value to set if the key doesn't exist.
+     *
+     * @return The existing value, or the value that was set.
+     */
+    public ListenableFuture<V> getOrSetex(K key, long seconds, V value) {
+        return fused(FusedScript.GET_OR_SETEX, new ValueOutput<K, V>(codec), key, new long[] { seconds }, Collections.singletonList(value));
+    }
+
     public ListenableFuture<Long> getbit(K key, long offset) {
         CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).add(offset);
         return dispatch(GETBIT, new IntegerOutput<K, V>(codec), args);
@@ -283,27 +453,27 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
     }
 
     public ListenableFuture<Long> hdel(K key, K... fields) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addKeys(fields);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addFields(fields);
         return dispatch(HDEL, new IntegerOutput<K, V>(codec), args);
     }
 
     public ListenableFuture<Boolean> hexists(K key, K field) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addKey(field);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addField(field);
         return dispatch(HEXISTS, new BooleanOutput<K, V>(codec), args);
     }
 
     public ListenableFuture<V> hget(K key, K field) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addKey(field);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addField(field);
         return dispatch(HGET, new ValueOutput<K, V>(codec), args);
     }
 
     public ListenableFuture<Long> hincrby(K key, K field, long amount) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addKey(field).add(amount);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addField(field).add(amount);
         return dispatch(HINCRBY, new IntegerOutput<K, V>(codec), args);
     }
 
     public ListenableFuture<Double> hincrbyfloat(K key, K field, double amount) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addKey(field).add(amount);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addField(field).add(amount);
         return dispatch(HINCRBYFLOAT, new DoubleOutput<K, V>(codec), args);
     }
 
@@ -320,22 +490,68 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
     }
 
     public ListenableFuture<List<V>> hmget(K key, K... fields) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addKeys(fields);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addFields(fields);
         return dispatch(HMGET, new ValueListOutput<K, V>(codec), args);
     }
 
+    public ListenableFuture<ScanResult<KeyValue<K, V>>> hscan(K key, String cursor) {
+        return hscan(key, cursor, null, 0);
+    }
+
+    /**
+     * Get the next page of fields and values of a hash.
+     *
+     * @param key       Hash key.
+     * @param cursor    Cursor returned by the previous call, or "0" to start.
+     * @param match     Pattern fields must match, or null for all fields.
+     * @param count     Hint of the number of fields to return, or 0 for the default.
+     *
+     * @return The next cursor and page of fields and values.
+     */
+    public ListenableFuture<ScanResult<KeyValue<K, V>>> hscan(K key, String cursor, K match, long count) {
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).add(cursor);
+        if (match != null) args.add(MATCH).add(codec.encodeKey(match));
+        if (count > 0) args.add(COUNT).add(count);
+        return dispatch(HSCAN, new KeyValueScanOutput<K, V>(codec), args);
+    }
+
+    /**
+     * Iterate over the fields and values of a hash with HSCAN.
+     *
+     * @param key       Hash key.
+     * @param match     Pattern fields must match, or null for all fields.
+     * @param count     Hint of the number of fields per page, or 0 for the default.
+     *
+     * @return An iterator over the fields and values.
+     */
+    public ScanIterator<K, V, KeyValue<K, V>> hscanIterator(final K key, final K match, final long count) {
+        return new ScanIterator<K, V, KeyValue<K, V>>(timeout, unit) {
+            @Override
+            protected ListenableFuture<ScanResult<KeyValue<K, V>>> scan(String cursor) {
+                return hscan(key, cursor, match, count);
+            }
+        };
+    }
+
     public ListenableFuture<String> hmset(K key, Map<K, V> map) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).add(map);
+        if (isChunked()) {
+            CommandChunks<K, V> chunks = new CommandChunks<K, V>(codec, key, chunkArgs, chunkBytes);
+            for (Map.Entry<K, V> entry : map.entrySet()) {
+                chunks.next(2).addField(entry.getKey()).addValue(entry.getValue());
+            }
+            return dispatchChunks(HMSET, chunks.list());
+        }
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addFields(map);
         return dispatch(HMSET, new StatusOutput<K, V>(codec), args);
     }
 
     public ListenableFuture<Boolean> hset(K key, K field, V value) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addKey(field).addValue(value);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addField(field).addValue(value);
         return dispatch(HSET, new BooleanOutput<K, V>(codec), args);
     }
 
     public ListenableFuture<Boolean> hsetnx(K key, K field, V value) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addKey(field).addValue(value);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).addField(field).addValue(value);
         return dispatch(HSETNX, new BooleanOutput<K, V>(codec), args);
     }
 
@@ -352,6 +568,20 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(INCRBY, new IntegerOutput<K, V>(codec), args);
     }
 
+    /**
+     * Increment a key and set its time to live if it has none, as for a rate
+     * limit window, in one atomic round trip.
+     *
+     * @param key       Key.
+     * @param amount    Amount to increment by.
+     * @param seconds   Time to live set when the key has none.
+     *
+     * @return The value after the increment.
+     */
+    public ListenableFuture<Long> incrbyExpire(K key, long amount, long seconds) {
+        return fused(FusedScript.INCRBY_EXPIRE, new IntegerOutput<K, V>(codec), key, new long[] { amount, seconds }, Collections.<V>emptyList());
+    }
+
     public ListenableFuture<Double> incrbyfloat(K key, double amount) {
         CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).add(amount);
         return dispatch(INCRBYFLOAT, new DoubleOutput<K, V>(codec), args);
@@ -397,6 +627,21 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(LPUSH, new IntegerOutput<K, V>(codec), key, values);
     }
 
+    /**
+     * Prepend values to a list and trim it to a maximum length, keeping the
+     * newest values, in one atomic round trip.
+     *
+     * @param key       List key.
+     * @param maxLength Maximum length of the list, at least 1.
+     * @param values    Values to prepend.
+     *
+     * @return The length of the list after the trim.
+     */
+    public ListenableFuture<Long> lpushTrim(K key, long maxLength, V... values) {
+        if (maxLength < 1) throw new IllegalArgumentException("maxLength must be positive");
+        return fused(FusedScript.LPUSH_TRIM, new IntegerOutput<K, V>(codec), key, new long[] { maxLength }, Arrays.asList(values));
+    }
+
     public ListenableFuture<Long> lpushx(K key, V value) {
         return dispatch(LPUSHX, new IntegerOutput<K, V>(codec), key, value);
     }
@@ -406,6 +651,26 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(LRANGE, new ValueListOutput<K, V>(codec), args);
     }
 
+    /**
+     * Iterate over a list with LRANGE, one window of indexes at a time.
+     *
+     * @param key       List key.
+     * @param pageSize  Number of elements requested at a time, at least 1.
+     *
+     * @return An iterator over the elements of the list.
+     */
+    public RangeIterator<K, V, V> lrangeIterator(final K key, int pageSize) {
+        return new RangeIterator<K, V, V>(pageSize, timeout, unit) {
+            private long start;
+
+            @Override
+            protected ListenableFuture<List<V>> range(List<V> previous) {
+                if (previous != null) start += previous.size();
+                return lrange(key, start, start + pageSize - 1);
+            }
+        };
+    }
+
     public ListenableFuture<Long> lrem(K key, long count, V value) {
         CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).add(count).addValue(value);
         return dispatch(LREM, new IntegerOutput<K, V>(codec), args);
@@ -444,6 +709,13 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
     }
 
     public ListenableFuture<String> mset(Map<K, V> map) {
+        if (isChunked()) {
+            CommandChunks<K, V> chunks = new CommandChunks<K, V>(codec, null, chunkArgs, chunkBytes);
+            for (Map.Entry<K, V> entry : map.entrySet()) {
+                chunks.next(2).addKey(entry.getKey()).addValue(entry.getValue());
+            }
+            return dispatchChunks(MSET, chunks.list());
+        }
         CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(map);
         return dispatch(MSET, new StatusOutput<K, V>(codec), args);
     }
@@ -533,6 +805,7 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
     }
 
     public ListenableFuture<Long> rpush(K key, V... values) {
+        if (isChunked()) return dispatchChunks(RPUSH, chunk(key, values), false);
         return dispatch(RPUSH, new IntegerOutput<K, V>(codec), key, values);
     }
 
@@ -541,6 +814,7 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
     }
 
     public ListenableFuture<Long> sadd(K key, V... members) {
+        if (isChunked()) return dispatchChunks(SADD, chunk(key, members), true);
         return dispatch(SADD, new IntegerOutput<K, V>(codec), key, members);
     }
 
@@ -548,10 +822,62 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(SAVE, new StatusOutput<K, V>(codec));
     }
 
+    public ListenableFuture<ScanResult<K>> scan(String cursor) {
+        return scan(cursor, null, 0);
+    }
+
+    /**
+     * Get the next page of keys.
+     *
+     * @param cursor    Cursor returned by the previous call, or "0" to start.
+     * @param match     Pattern keys must match, or null for all keys.
+     * @param count     Hint of the number of keys to return, or 0 for the default.
+     *
+     * @return The next cursor and page of keys.
+     */
+    public ListenableFuture<ScanResult<K>> scan(String cursor, K match, long count) {
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(cursor);
+        if (match != null) args.add(MATCH).add(codec.encodeKey(match));
+        if (count > 0) args.add(COUNT).add(count);
+        return dispatch(SCAN, new KeyScanOutput<K, V>(codec), args);
+    }
+
+    /**
+     * Iterate over the keys of the database with SCAN.
+     *
+     * @param match     Pattern keys must match, or null for all keys.
+     * @param count     Hint of the number of keys per page, or 0 for the default.
+     *
+     * @return An iterator over the keys.
+     */
+    public ScanIterator<K, V, K> scanIterator(final K match, final long count) {
+        return new ScanIterator<K, V, K>(timeout, unit) {
+            @Override
+            protected ListenableFuture<ScanResult<K>> scan(String cursor) {
+                return RedisAsyncConnection.this.scan(cursor, match, count);
+            }
+        };
+    }
+
     public ListenableFuture<Long> scard(K key) {
         return dispatch(SCARD, new IntegerOutput<K, V>(codec), key);
     }
 
+    /**
+     * Register a Lua script with this connection. The returned handle runs the
+     * script with EVALSHA and the script is loaded on every new channel.
+     *
+     * @param script    Lua script.
+     * @param type      Script output type.
+     *
+     * @return A handle to run the script.
+     */
+    public RedisScript<K, V> script(V script, ScriptOutputType type) {
+        RedisScript<K, V> handle = new RedisScript<K, V>(this, script, type, digest(script));
+        scripts.add(handle);
+        return handle;
+    }
+
     public ListenableFuture<List<Boolean>> scriptExists(String... digests) {
         CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(EXISTS);
         for (String sha : digests) args.add(sha);
@@ -591,6 +917,11 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return status;
     }
 
+    public ListenableFuture<List<String>> sentinelGetMasterAddrByName(String masterName) {
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add("get-master-addr-by-name").add(masterName);
+        return dispatch(SENTINEL, new StringListOutput<K, V>(codec), args);
+    }
+
     public ListenableFuture<String> set(K key, V value) {
         return dispatch(SET, new StatusOutput<K, V>(codec), key, value);
     }
@@ -710,6 +1041,45 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(SREM, new IntegerOutput<K, V>(codec), key, members);
     }
 
+    public ListenableFuture<ScanResult<V>> sscan(K key, String cursor) {
+        return sscan(key, cursor, null, 0);
+    }
+
+    /**
+     * Get the next page of members of a set.
+     *
+     * @param key       Set key.
+     * @param cursor    Cursor returned by the previous call, or "0" to start.
+     * @param match     Pattern members must match, or null for all members.
+     * @param count     Hint of the number of members to return, or 0 for the default.
+     *
+     * @return The next cursor and page of members.
+     */
+    public ListenableFuture<ScanResult<V>> sscan(K key, String cursor, V match, long count) {
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).add(cursor);
+        if (match != null) args.add(MATCH).addValue(match);
+        if (count > 0) args.add(COUNT).add(count);
+        return dispatch(SSCAN, new ValueScanOutput<K, V>(codec), args);
+    }
+
+    /**
+     * Iterate over the members of a set with SSCAN.
+     *
+     * @param key       Set key.
+     * @param match     Pattern members must match, or null for all members.
+     * @param count     Hint of the number of members per page, or 0 for the default.
+     *
+     * @return An iterator over the members.
+     */
+    public ScanIterator<K, V, V> sscanIterator(final K key, final V match, final long count) {
+        return new ScanIterator<K, V, V>(timeout, unit) {
+            @Override
+            protected ListenableFuture<ScanResult<V>> scan(String cursor) {
+                return sscan(key, cursor, match, count);
+            }
+        };
+    }
+
     public ListenableFuture<Set<V>> sunion(K... keys) {
         CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKeys(keys);
         return dispatch(SUNION, new ValueSetOutput<K, V>(codec), args);
@@ -728,6 +1098,18 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(STRLEN, new IntegerOutput<K, V>(codec), key);
     }
 
+    /**
+     * Start building a MULTI/EXEC transaction. Commands called on the returned
+     * transaction are collected until {@link RedisTransaction#exec} writes them
+     * to this connection as one block, so the transaction is safe on a
+     * connection shared with other threads.
+     *
+     * @return A new transaction.
+     */
+    public RedisTransaction<K, V> transaction() {
+        return new RedisTransaction<K, V>(this, codec, timeout, unit);
+    }
+
     public ListenableFuture<Long> ttl(K key) {
         return dispatch(TTL, new IntegerOutput<K, V>(codec), key);
     }
@@ -752,6 +1134,13 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
 
     @SuppressWarnings("unchecked")
     public ListenableFuture<Long> zadd(K key, Object... scoresAndValues) {
+        if (isChunked()) {
+            CommandChunks<K, V> chunks = new CommandChunks<K, V>(codec, key, chunkArgs, chunkBytes);
+            for (int i = 0; i < scoresAndValues.length; i += 2) {
+                chunks.next(2).add((Double) scoresAndValues[i]).addValue((V) scoresAndValues[i + 1]);
+            }
+            return dispatchChunks(ZADD, chunks.list(), true);
+        }
         CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key);
         for (int i = 0; i < scoresAndValues.length; i += 2) {
             args.add((Double) scoresAndValues[i]);
@@ -774,7 +1163,7 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
     }
 
     public ListenableFuture<Double> zincrby(K key, double amount, K member) {
-        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).add(amount).addKey(member);
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).add(amount).addField(member);
         return dispatch(ZINCRBY, new DoubleOutput<K, V>(codec), args);
     }
 
@@ -838,6 +1227,48 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(ZRANGEBYSCORE, new ScoredValueListOutput<K, V>(codec), args);
     }
 
+    /**
+     * Iterate over the members of a sorted set with scores between min and max
+     * with ZRANGEBYSCORE ... LIMIT. Each page starts at the score of the last
+     * member read, skipping the members with that score already read, so the
+     * server does not have to skip over all preceding members.
+     *
+     * @param key       Sorted set key.
+     * @param min       Minimum score.
+     * @param max       Maximum score.
+     * @param pageSize  Number of members requested at a time, at least 1.
+     *
+     * @return An iterator over the members and their scores.
+     */
+    public RangeIterator<K, V, ScoredValue<V>> zrangebyscoreIterator(final K key, final String min, final String max, int pageSize) {
+        return new RangeIterator<K, V, ScoredValue<V>>(pageSize, timeout, unit) {
+            private String from = min;
+            private boolean seeked;
+            private double score;
+            private long offset;
+
+            @Override
+            protected ListenableFuture<List<ScoredValue<V>>> range(List<ScoredValue<V>> previous) {
+                if (previous != null) {
+                    double last = previous.get(previous.size() - 1).score;
+                    int ties = 0;
+                    for (int i = previous.size() - 1; i >= 0 && previous.get(i).score == last; i--) {
+                        ties++;
+                    }
+                    if (seeked && last == score) {
+                        offset += ties;
+                    } else {
+                        from   = string(last);
+                        seeked = true;
+                        score  = last;
+                        offset = ties;
+                    }
+                }
+                return zrangebyscoreWithScores(key, from, max, offset, pageSize);
+            }
+        };
+    }
+
     public ListenableFuture<Long> zrank(K key, V member) {
         return dispatch(ZRANK, new IntegerOutput<K, V>(codec), key, member);
     }
@@ -914,6 +1345,45 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return dispatch(ZREVRANK, new IntegerOutput<K, V>(codec), key, member);
     }
 
+    public ListenableFuture<ScanResult<ScoredValue<V>>> zscan(K key, String cursor) {
+        return zscan(key, cursor, null, 0);
+    }
+
+    /**
+     * Get the next page of members and scores of a sorted set.
+     *
+     * @param key       Sorted set key.
+     * @param cursor    Cursor returned by the previous call, or "0" to start.
+     * @param match     Pattern members must match, or null for all members.
+     * @param count     Hint of the number of members to return, or 0 for the default.
+     *
+     * @return The next cursor and page of members and scores.
+     */
+    public ListenableFuture<ScanResult<ScoredValue<V>>> zscan(K key, String cursor, V match, long count) {
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(key).add(cursor);
+        if (match != null) args.add(MATCH).addValue(match);
+        if (count > 0) args.add(COUNT).add(count);
+        return dispatch(ZSCAN, new ScoredValueScanOutput<K, V>(codec), args);
+    }
+
+    /**
+     * Iterate over the members and scores of a sorted set with ZSCAN.
+     *
+     * @param key       Sorted set key.
+     * @param match     Pattern members must match, or null for all members.
+     * @param count     Hint of the number of members per page, or 0 for the default.
+     *
+     * @return An iterator over the members and scores.
+     */
+    public ScanIterator<K, V, ScoredValue<V>> zscanIterator(final K key, final V match, final long count) {
+        return new ScanIterator<K, V, ScoredValue<V>>(timeout, unit) {
+            @Override
+            protected ListenableFuture<ScanResult<ScoredValue<V>>> scan(String cursor) {
+                return zscan(key, cursor, match, count);
+            }
+        };
+    }
+
     public ListenableFuture<Double> zscore(K key, V member) {
         return dispatch(ZSCORE, new DoubleOutput<K, V>(codec), key, member);
     }
@@ -974,70 +1444,201 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return complete;
     }
 
+    /**
+     * Check if the connection's channel is connected to the server.
+     *
+     * @return true if connected.
+     */
+    public synchronized boolean isOpen() {
+        return channel != null && channel.isActive();
+    }
+
     /**
      * Close the connection.
      */
     public synchronized void close() {
-        if (!closed && channel != null) {
+        if (closed) return;
+        if (blockingPool != null) blockingPool.close();
+        if (channel != null) {
             ConnectionWatchdog watchdog = channel.pipeline().get(ConnectionWatchdog.class);
-            watchdog.setReconnect(false);
+            if (watchdog == null) watchdog = this.watchdog;
+            if (watchdog != null) watchdog.setReconnect(false);
             closed = true;
             channel.close();
+        } else if (watchdog != null) {
+            watchdog.setReconnect(false);
+            closed = true;
+            cancelQueued();
         }
     }
 
     public String digest(V script) {
+        return digest(codec.encodeValue(script));
+    }
+
+    /**
+     * Compute the SHA1 digest of an encoded script, as used by EVALSHA.
+     *
+     * @param script    Encoded script.
+     *
+     * @return The digest in hex.
+     */
+    static String digest(byte[] script) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA1");
-            md.update(codec.encodeValue(script));
+            md.update(script);
             return new String(Base16.encode(md.digest(), false));
         } catch (NoSuchAlgorithmException e) {
             throw new RedisException("JVM does not support SHA1");
         }
     }
 
-    @Override
-    public synchronized void channelActive(ChannelHandlerContext ctx) throws Exception {
-        channel = ctx.channel();
+    /**
+     * Set the password and database restored whenever this connection connects,
+     * as for a connection opened by a routing connection that is already
+     * authenticated.
+     *
+     * @param password  Password, or null.
+     * @param db        Database index.
+     */
+    synchronized void setSession(String password, int db) {
+        this.password = password;
+        this.db       = db;
+    }
 
-        List<Command<K, V, ?>> tmp = new ArrayList<Command<K, V, ?>>(queue.size() + 2);
+    /**
+     * Create the commands that restore the authentication and selected database
+     * of this connection on a new channel, and load its registered scripts and
+     * the scripts of fused operations, so their first EVALSHA does not fail
+     * with NOSCRIPT and get resent behind later commands.
+     *
+     * @return Commands to send before any other command on a new channel.
+     */
+    public synchronized List<Command<K, V, ?>> handshake() {
+        List<Command<K, V, ?>> cmds = session();
+
+        for (RedisScript<K, V> script : scripts) {
+            CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(LOAD).addValue(script.getScript());
+            cmds.add(new Command<K, V, String>(SCRIPT, new StatusOutput<K, V>(codec), args, false));
+        }
+
+        for (FusedScript script : FusedScript.ALL) {
+            CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(LOAD).add(script.source);
+            cmds.add(new Command<K, V, String>(SCRIPT, new StatusOutput<K, V>(codec), args, false));
+        }
+
+        return cmds;
+    }
+
+    /**
+     * Create the commands that restore the authentication and selected database
+     * of this connection.
+     *
+     * @return AUTH and SELECT commands, as needed.
+     */
+    private List<Command<K, V, ?>> session() {
+        List<Command<K, V, ?>> cmds = new ArrayList<Command<K, V, ?>>(2 + scripts.size());
 
         if (password != null) {
             CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(password);
-            tmp.add(new Command<K, V, String>(AUTH, new StatusOutput<K, V>(codec), args, false));
+            cmds.add(new Command<K, V, String>(AUTH, new StatusOutput<K, V>(codec), args, false));
         }
 
         if (db != 0) {
             CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(db);
-            tmp.add(new Command<K, V, String>(SELECT, new StatusOutput<K, V>(codec), args, false));
+            cmds.add(new Command<K, V, String>(SELECT, new StatusOutput<K, V>(codec), args, false));
+        }
+
+        return cmds;
+    }
+
+    @Override
+    public synchronized void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (closed && channel == null) {
+            ctx.channel().close();
+            return;
         }
 
+        channel = ctx.channel();
+
+        List<Command<K, V, ?>> tmp = new ArrayList<Command<K, V, ?>>(queue.size() + 2);
+
+        tmp.addAll(handshake());
         tmp.addAll(queue);
         queue.clear();
+        backlog.clear();
 
         for (Command<K, V, ?> cmd : tmp) {
             if (!cmd.isCancelled()) {
                 queue.add(cmd);
-                channel.writeAndFlush(cmd);
+                backlog.add(cmd);
+            } else {
+                cmd.unspool();
             }
         }
 
         tmp.clear();
+        drain();
+    }
+
+    @Override
+    public synchronized void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (channel != null && channel.isWritable()) {
+            drain();
+        }
+        ctx.fireChannelWritabilityChanged();
     }
 
     @Override
     public synchronized void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        if (closed) {
-            for (Command<K, V, ?> cmd : queue) {
-                if (cmd.getOutput() != null) {
-                    cmd.getOutput().setError("Connection closed");
-                }
-                cmd.complete();
+        if (closed && queue != null) {
+            cancelQueued();
+        }
+    }
+
+    private void cancelQueued() {
+        for (Command<K, V, ?> cmd : queue) {
+            if (cmd.getOutput() != null) {
+                cmd.getOutput().setError("Connection closed");
             }
-            queue.clear();
-            queue = null;
-            channel = null;
+            cmd.complete();
+        }
+        queue.clear();
+        queue = null;
+        backlog.clear();
+        channel = null;
+        if (spool != null) spool.close();
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            heartbeat(ctx.channel());
+        }
+        ctx.fireUserEventTriggered(evt);
+    }
+
+    /**
+     * Send a PING on an idle channel and close the channel if the server does
+     * not reply within the heartbeat timeout. No PING is sent during a MULTI
+     * block or while a blocking command is outstanding.
+     *
+     * @param channel   Idle channel.
+     */
+    protected synchronized void heartbeat(final Channel channel) {
+        if (closed || heartbeat <= 0 || multi != null || channel != this.channel) return;
+
+        for (Command<K, V, ?> cmd : queue) {
+            if (cmd.type.isBlocking()) return;
         }
+
+        final Command<K, V, String> ping = dispatch(PING, new StatusOutput<K, V>(codec));
+        channel.eventLoop().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!ping.isDone()) channel.close();
+            }
+        }, heartbeat, TimeUnit.MILLISECONDS);
     }
 
     public <T> Command<K, V, T> dispatch(CommandType type, CommandOutput<K, V, T> output) {
@@ -1060,17 +1661,209 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
     }
 
     public synchronized <T> Command<K, V, T> dispatch(CommandType type, CommandOutput<K, V, T> output, CommandArgs<K, V> args) {
-        Command<K, V, T> cmd = new Command<K, V, T>(type, output, args, multi != null);
+        return dispatch(newCommand(type, output, args));
+    }
+
+    /**
+     * Check if dispatched commands are queued by the server for a MULTI/EXEC
+     * transaction, so replies such as NOSCRIPT can't be acted on before EXEC.
+     *
+     * @return true within a MULTI block.
+     */
+    protected boolean isQueued() {
+        return multi != null;
+    }
+
+    /**
+     * Run a fused operation script with EVALSHA, falling back to EVAL if the
+     * server does not have it cached. Only EVALSHA is sent when commands are
+     * {@link #isQueued queued} for a transaction.
+     *
+     * @param script    Script to run.
+     * @param output    Command output.
+     * @param key       Key passed to the script.
+     * @param numbers   Numeric args passed to the script.
+     * @param values    Values passed to the script after the numeric args.
+     *
+     * @return The command.
+     */
+    private <T> Command<K, V, T> fused(final FusedScript script, CommandOutput<K, V, T> output, final K key,
+                                       final long[] numbers, final List<V> values) {
+        CommandArgs<K, V> args = fusedArgs(new CommandArgs<K, V>(codec).add(script.digest), key, numbers, values);
+        if (isQueued()) return dispatch(EVALSHA, output, args);
+        return dispatch(new ScriptCommand<K, V, T>(this, output, args) {
+            @Override
+            protected CommandArgs<K, V> evalArgs() {
+                return fusedArgs(new CommandArgs<K, V>(codec).add(script.source), key, numbers, values);
+            }
+        });
+    }
+
+    /**
+     * Check if variadic writes are split into chunks by {@link #setChunking}.
+     *
+     * @return true when chunking is enabled and commands are not queued.
+     */
+    private boolean isChunked() {
+        return (chunkArgs > 0 || chunkBytes > 0) && !isQueued();
+    }
+
+    private List<CommandArgs<K, V>> chunk(K key, V[] values) {
+        CommandChunks<K, V> chunks = new CommandChunks<K, V>(codec, key, chunkArgs, chunkBytes);
+        for (V value : values) {
+            chunks.next(1).addValue(value);
+        }
+        return chunks.list();
+    }
+
+    /**
+     * Send the chunks of a split write whose reply is an integer.
+     *
+     * @param type      Command type.
+     * @param chunks    Args of each command.
+     * @param sum       true to sum the replies, false to return the last reply.
+     *
+     * @return The combined reply.
+     */
+    private ListenableFuture<Long> dispatchChunks(CommandType type, List<CommandArgs<K, V>> chunks, final boolean sum) {
+        if (chunks.size() == 1) return dispatch(type, new IntegerOutput<K, V>(codec), chunks.get(0));
+
+        final int last = chunks.size() - 1;
+        FanOutCommand<K, V, Long, Long> cmd = new FanOutCommand<K, V, Long, Long>(type, new IntegerOutput<K, V>(codec), chunks.size()) {
+            private long count;
+
+            @Override
+            protected void merge(int index, Long value) {
+                if (sum) {
+                    count += value;
+                } else if (index == last) {
+                    count = value;
+                }
+            }
+
+            @Override
+            protected void finish() {
+                output.set(count);
+            }
+        };
+
+        for (int i = 0; i < chunks.size(); i++) {
+            dispatch(cmd.join(i, newCommand(type, new IntegerOutput<K, V>(codec), chunks.get(i))));
+        }
+
+        return cmd;
+    }
+
+    /**
+     * Send the chunks of a split write whose reply is OK.
+     *
+     * @param type      Command type.
+     * @param chunks    Args of each command.
+     *
+     * @return OK when all commands succeed.
+     */
+    private ListenableFuture<String> dispatchChunks(CommandType type, List<CommandArgs<K, V>> chunks) {
+        if (chunks.size() == 1) return dispatch(type, new StatusOutput<K, V>(codec), chunks.get(0));
+
+        FanOutCommand<K, V, String, String> cmd = new FanOutCommand<K, V, String, String>(type, new StatusOutput<K, V>(codec), chunks.size()) {
+            @Override
+            protected void merge(int index, String value) {
+                // nothing to merge
+            }
+
+            @Override
+            protected void finish() {
+                output.set(Charsets.buffer("OK"));
+            }
+        };
+
+        for (int i = 0; i < chunks.size(); i++) {
+            dispatch(cmd.join(i, newCommand(type, new StatusOutput<K, V>(codec), chunks.get(i))));
+        }
+
+        return cmd;
+    }
+
+    private CommandArgs<K, V> fusedArgs(CommandArgs<K, V> args, K key, long[] numbers, List<V> values) {
+        args.add(1).addKey(key);
+        for (long n : numbers) {
+            args.add(n);
+        }
+        for (V value : values) {
+            args.addValue(value);
+        }
+        return args;
+    }
+
+    /**
+     * Queue a command for sending to the server. The command may have been
+     * created by another connection, as when a command is redirected.
+     *
+     * @param cmd   Command to send.
+     *
+     * @return The command.
+     */
+    public synchronized <T> Command<K, V, T> dispatch(Command<K, V, T> cmd) {
+        if (singleFlight != null) {
+            if (isQueued() || closed) {
+                singleFlight.clear();
+            } else if (singleFlight.join(cmd)) {
+                if (executor != null) cmd.setExecutor(executor);
+                return cmd;
+            }
+        }
+
+        if (blockingPool != null && multi == null && cmd.type.isBlocking() && !closed) {
+            return dispatchBlocking(cmd);
+        }
+
+        return enqueue(cmd, true);
+    }
+
+    /**
+     * Queue a block of commands for sending to the server with no other
+     * commands in between, as for a pipelined MULTI/EXEC transaction. The
+     * commands are flushed to the channel together.
+     *
+     * @param cmds  Commands to send, in order.
+     */
+    public synchronized void dispatchAll(List<? extends Command<K, V, ?>> cmds) {
+        if (multi != null) throw new RedisException("Connection is in a MULTI block");
+        if (singleFlight != null) singleFlight.clear();
+
+        for (Command<K, V, ?> cmd : cmds) {
+            enqueue(cmd, false);
+        }
+        if (channel != null && channel.isActive()) channel.flush();
+    }
+
+    private <T> Command<K, V, T> enqueue(Command<K, V, T> cmd, boolean flush) {
+        if (executor != null) cmd.setExecutor(executor);
 
         try {
             if (multi != null) {
                 multi.add(cmd);
             }
 
+            if (channel == null && watchdog != null && !closed) {
+                watchdog.connect();
+            }
+
+            boolean connected = channel != null && channel.isActive();
+            if (!connected && spool != null && spool.accepts(cmd, queue.size())) {
+                cmd.spool(spool);
+            }
+
             queue.put(cmd);
 
-            if (channel != null) {
-                channel.writeAndFlush(cmd);
+            if (connected && backlog.isEmpty()) {
+                if (flush) {
+                    channel.writeAndFlush(cmd);
+                } else {
+                    channel.write(cmd);
+                }
+            } else {
+                backlog.add(cmd);
             }
         } catch (NullPointerException e) {
             throw new RedisException("Connection is closed");
@@ -1081,6 +1874,89 @@ public class RedisAsyncConnection<K, V> extends ChannelInboundHandlerAdapter {
         return cmd;
     }
 
+    /**
+     * Send a blocking command over a connection borrowed from the blocking pool,
+     * preceded by the AUTH and SELECT of this connection. The connection is
+     * released when the command completes, or closed as soon as the command
+     * is cancelled, as when a caller times out, since a late reply would
+     * otherwise complete the next command sent over it.
+     *
+     * @param cmd   Blocking command.
+     *
+     * @return The command.
+     */
+    private <T> Command<K, V, T> dispatchBlocking(final Command<K, V, T> cmd) {
+        final RedisConnectionPool<K, V> pool = blockingPool;
+        final List<Command<K, V, ?>> handshake = session();
+
+        pool.borrow().then(new Callback<RedisAsyncConnection<K, V>>() {
+            @Override
+            public void call(final RedisAsyncConnection<K, V> connection) {
+                if (cmd.isCancelled()) {
+                    pool.release(connection);
+                    return;
+                }
+
+                FailCallback release = new FailCallback() {
+                    @Override
+                    public void fail(String error) {
+                        if (cmd.isCancelled()) {
+                            connection.close();
+                        } else {
+                            pool.release(connection);
+                        }
+                    }
+                };
+                cmd.then(new Callback<T>() {
+                    @Override
+                    public void call(T value) {
+                        pool.release(connection);
+                    }
+                }, release);
+
+                for (Command<K, V, ?> c : handshake) {
+                    connection.dispatch(c);
+                }
+                connection.dispatch(cmd);
+            }
+        }, new FailCallback() {
+            @Override
+            public void fail(String error) {
+                if (cmd.getOutput() != null) cmd.getOutput().setError(error);
+                cmd.complete();
+            }
+        });
+
+        return cmd;
+    }
+
+    /**
+     * Create the command sent by {@link #dispatch(CommandType, CommandOutput, CommandArgs)}.
+     *
+     * @param type      Command type.
+     * @param output    Command output.
+     * @param args      Command args, if any.
+     *
+     * @return A new command.
+     */
+    protected <T> Command<K, V, T> newCommand(CommandType type, CommandOutput<K, V, T> output, CommandArgs<K, V> args) {
+        return new Command<K, V, T>(type, output, args, multi != null);
+    }
+
+    /**
+     * Write queued commands that have not been sent yet, stopping when the
+     * channel's outbound buffer is full. Writing resumes when the channel
+     * becomes writable again.
+     */
+    protected synchronized void drain() {
+        boolean written = false;
+        while (!backlog.isEmpty() && channel.isWritable()) {
+            channel.write(backlog.poll());
+            written = true;
+        }
+        if (written) channel.flush();
+    }
+
     public <T> T await(Command<K, V, T> cmd, long timeout, TimeUnit unit) {
         if (!cmd.await(timeout, unit)) {
             cmd.cancel(true);
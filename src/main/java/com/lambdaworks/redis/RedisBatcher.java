@@ -0,0 +1,205 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.DeferredFuture;
+import com.lambdaworks.redis.concurrent.FailCallback;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects single-key GET and HGET calls made by many threads and sends them
+ * as one MGET, or one HMGET per hash, completing the future of each call with
+ * its own value. A batch is sent when it holds maxSize calls or when the
+ * window has passed since its first call, whichever comes first, so a call is
+ * delayed by at most the window.
+ *
+ * Batching trades a little latency for fewer commands and less server CPU, it
+ * pays off when many independent reads are issued concurrently. A batch of one
+ * call is sent as a plain GET or HGET.
+ *
+ * @author Will Glozer
+ */
+public class RedisBatcher<K, V> implements Runnable {
+    private RedisAsyncConnection<K, V> connection;
+    private ScheduledExecutorService scheduler;
+    private int maxSize;
+    private long window;
+    private Batch gets;
+    private Map<K, Batch> hgets;
+    private int size;
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * Create a new batcher.
+     *
+     * @param connection    Connection the batched commands are sent over.
+     * @param scheduler     Scheduler used to send a batch when its window ends,
+     *                      such as the client's event loop group.
+     * @param maxSize       Maximum number of calls in a batch.
+     * @param window        Maximum time a call waits for other calls.
+     * @param unit          Unit of time for the window.
+     */
+    public RedisBatcher(RedisAsyncConnection<K, V> connection, ScheduledExecutorService scheduler, int maxSize,
+                        long window, TimeUnit unit) {
+        this.connection = connection;
+        this.scheduler  = scheduler;
+        this.maxSize    = maxSize;
+        this.window     = unit.toNanos(window);
+        this.hgets      = new LinkedHashMap<K, Batch>();
+    }
+
+    /**
+     * Get the value of a key in the next MGET.
+     *
+     * @param key   Key to get.
+     *
+     * @return The value, or null if the key does not exist.
+     */
+    public ListenableFuture<V> get(K key) {
+        DeferredFuture<V> future = new DeferredFuture<V>();
+        List<Batch> full;
+        synchronized (this) {
+            if (gets == null) gets = new Batch(null);
+            full = add(gets, key, future);
+        }
+        send(full);
+        return future;
+    }
+
+    /**
+     * Get the value of a hash field in the next HMGET of the hash.
+     *
+     * @param key   Key of the hash.
+     * @param field Field to get.
+     *
+     * @return The value, or null if the field does not exist.
+     */
+    public ListenableFuture<V> hget(K key, K field) {
+        DeferredFuture<V> future = new DeferredFuture<V>();
+        List<Batch> full;
+        synchronized (this) {
+            Batch batch = hgets.get(key);
+            if (batch == null) {
+                batch = new Batch(key);
+                hgets.put(key, batch);
+            }
+            full = add(batch, field, future);
+        }
+        send(full);
+        return future;
+    }
+
+    /**
+     * Send all pending calls now.
+     */
+    public void flush() {
+        List<Batch> batches;
+        synchronized (this) {
+            batches = take();
+        }
+        send(batches);
+    }
+
+    /**
+     * Send the pending calls when the window of a batch ends.
+     */
+    @Override
+    public void run() {
+        flush();
+    }
+
+    private List<Batch> add(Batch batch, K key, DeferredFuture<V> future) {
+        batch.keys.add(key);
+        batch.futures.add(future);
+        if (++size >= maxSize) return take();
+        if (scheduled == null) scheduled = scheduler.schedule(this, window, TimeUnit.NANOSECONDS);
+        return Collections.emptyList();
+    }
+
+    private List<Batch> take() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+
+        List<Batch> batches = new ArrayList<Batch>(hgets.values());
+        if (gets != null) batches.add(gets);
+
+        gets  = null;
+        hgets = new LinkedHashMap<K, Batch>();
+        size  = 0;
+
+        return batches;
+    }
+
+    private void send(List<Batch> batches) {
+        for (Batch batch : batches) {
+            batch.send();
+        }
+    }
+
+    private class Batch implements FailCallback {
+        private K key;
+        private List<K> keys;
+        private List<DeferredFuture<V>> futures;
+
+        Batch(K key) {
+            this.key     = key;
+            this.keys    = new ArrayList<K>();
+            this.futures = new ArrayList<DeferredFuture<V>>();
+        }
+
+        /**
+         * Send the batch, failing the futures of its calls if the command
+         * cannot be dispatched, for example when the connection is closed.
+         */
+        void send() {
+            try {
+                dispatch();
+            } catch (RuntimeException e) {
+                for (DeferredFuture<V> future : futures) {
+                    future.failure(e);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void dispatch() {
+            if (keys.size() == 1) {
+                K k = keys.get(0);
+                ListenableFuture<V> value = key == null ? connection.get(k) : connection.hget(key, k);
+                value.then(new Callback<V>() {
+                    @Override
+                    public void call(V value) {
+                        futures.get(0).resolve(value);
+                    }
+                }, this);
+                return;
+            }
+
+            K[] array = (K[]) keys.toArray();
+            ListenableFuture<List<V>> values = key == null ? connection.mget(array) : connection.hmget(key, array);
+            values.then(new Callback<List<V>>() {
+                @Override
+                public void call(List<V> values) {
+                    for (int i = 0; i < futures.size(); i++) {
+                        futures.get(i).resolve(values.get(i));
+                    }
+                }
+            }, this);
+        }
+
+        @Override
+        public void fail(String error) {
+            for (DeferredFuture<V> future : futures) {
+                future.failure(error);
+            }
+        }
+    }
+}
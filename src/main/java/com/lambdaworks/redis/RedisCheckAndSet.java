@@ -0,0 +1,212 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs optimistic check-and-set transactions on connections borrowed from a
+ * {@link RedisConnectionPool}. Each attempt WATCHes the keys, lets an
+ * {@link Operation} read them and queue writes on a {@link RedisTransaction},
+ * then sends the transaction. When EXEC is aborted because a watched key
+ * changed the attempt is retried after an exponential backoff with jitter,
+ * up to a maximum number of attempts.
+ *
+ * When a command fails or times out, including EXEC failing with EXECABORT,
+ * the exception is thrown without a retry and the connection is closed rather
+ * than returned to the pool, since it may still hold WATCHed keys or expect
+ * late replies.
+ *
+ * Counts of attempts, commits and conflicts are kept so contention on hot
+ * keys can be measured.
+ *
+ * @author Will Glozer
+ */
+public class RedisCheckAndSet<K, V> {
+    /**
+     * The reads and writes of a check-and-set transaction. An operation may be
+     * run several times and should have no side effects other than the writes
+     * it queues.
+     */
+    public interface Operation<K, V> {
+        /**
+         * Read the watched keys and queue writes.
+         *
+         * @param redis Connection for reads, with the keys watched.
+         * @param tx    Transaction for writes.
+         */
+        void run(RedisConnection<K, V> redis, RedisTransaction<K, V> tx);
+    }
+
+    private RedisConnectionPool<K, V> pool;
+    private int maxAttempts;
+    private long minBackoff;
+    private long maxBackoff;
+    private long timeout;
+    private TimeUnit unit;
+    private Random random;
+
+    private AtomicLong attempts;
+    private AtomicLong commits;
+    private AtomicLong conflicts;
+
+    /**
+     * Create a new helper that retries up to 10 times with a backoff between
+     * 1 and 100 milliseconds.
+     *
+     * @param pool      Pool of connections to run transactions on.
+     * @param timeout   Maximum time to wait for a connection or reply.
+     * @param unit      Unit of time for the timeout.
+     */
+    public RedisCheckAndSet(RedisConnectionPool<K, V> pool, long timeout, TimeUnit unit) {
+        this.pool      = pool;
+        this.timeout   = timeout;
+        this.unit      = unit;
+        this.random    = new Random();
+        this.attempts  = new AtomicLong();
+        this.commits   = new AtomicLong();
+        this.conflicts = new AtomicLong();
+        setRetry(10, 1, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Set the number of attempts and the backoff between them. The backoff
+     * doubles after each conflict, starting at min and capped at max.
+     *
+     * @param maxAttempts   Maximum number of attempts.
+     * @param min           Backoff after the first conflict.
+     * @param max           Maximum backoff.
+     * @param unit          Unit of time for the backoff.
+     */
+    public void setRetry(int maxAttempts, long min, long max, TimeUnit unit) {
+        this.maxAttempts = maxAttempts;
+        this.minBackoff  = unit.toMillis(min);
+        this.maxBackoff  = unit.toMillis(max);
+    }
+
+    /**
+     * Run a check-and-set transaction until it commits.
+     *
+     * @param op    Reads and writes of the transaction.
+     * @param keys  Keys to watch.
+     *
+     * @return The results of the queued writes.
+     *
+     * @throws RedisException if every attempt conflicted, or a command failed.
+     */
+    public List<Object> execute(Operation<K, V> op, K... keys) {
+        RedisAsyncConnection<K, V> connection = borrow();
+        boolean broken = true;
+        try {
+            RedisConnection<K, V> redis = new RedisConnection<K, V>(connection);
+            long backoff = minBackoff;
+
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                attempts.incrementAndGet();
+                redis.watch(keys);
+
+                RedisTransaction<K, V> tx = connection.transaction();
+                try {
+                    op.run(redis, tx);
+                } catch (RuntimeException e) {
+                    tx.discard();
+                    throw e;
+                }
+
+                if (tx.size() == 0) {
+                    redis.unwatch();
+                    commits.incrementAndGet();
+                    broken = false;
+                    return Collections.emptyList();
+                }
+
+                List<Object> results = connection.await(tx.exec(), timeout, unit);
+                if (results != null) {
+                    commits.incrementAndGet();
+                    broken = false;
+                    return results;
+                }
+
+                conflicts.incrementAndGet();
+                if (attempt < maxAttempts) {
+                    sleep(backoff);
+                    backoff = Math.min(backoff * 2, maxBackoff);
+                }
+            }
+
+            broken = false;
+            throw new RedisException("Transaction aborted after " + maxAttempts + " attempts");
+        } finally {
+            if (broken) {
+                connection.close();
+            } else {
+                pool.release(connection);
+            }
+        }
+    }
+
+    /**
+     * Get the number of attempts made, including the ones that conflicted.
+     *
+     * @return The number of attempts.
+     */
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    /**
+     * Get the number of transactions that committed.
+     *
+     * @return The number of commits.
+     */
+    public long getCommits() {
+        return commits.get();
+    }
+
+    /**
+     * Get the number of attempts aborted because a watched key changed.
+     *
+     * @return The number of conflicts.
+     */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    /**
+     * Get the fraction of attempts that conflicted.
+     *
+     * @return The conflict rate, between 0 and 1.
+     */
+    public double getConflictRate() {
+        long n = attempts.get();
+        return n > 0 ? (double) conflicts.get() / n : 0;
+    }
+
+    private RedisAsyncConnection<K, V> borrow() {
+        try {
+            return pool.borrow().get(timeout, unit);
+        } catch (ExecutionException e) {
+            throw new RedisException("Unable to connect", e.getCause());
+        } catch (TimeoutException e) {
+            throw new RedisException("Timed out waiting for a connection");
+        } catch (InterruptedException e) {
+            throw new RedisCommandInterruptedException(e);
+        }
+    }
+
+    private void sleep(long backoff) {
+        if (backoff <= 0) return;
+        long jittered = backoff / 2 + (long) (random.nextDouble() * (backoff - backoff / 2));
+        try {
+            Thread.sleep(jittered);
+        } catch (InterruptedException e) {
+            throw new RedisCommandInterruptedException(e);
+        }
+    }
+}
@@ -4,6 +4,8 @@ package com.lambdaworks.redis;
 
 import com.lambdaworks.redis.codec.RedisCodec;
 import com.lambdaworks.redis.codec.Utf8StringCodec;
+import com.lambdaworks.redis.concurrent.DeferredFuture;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
 import com.lambdaworks.redis.protocol.*;
 import com.lambdaworks.redis.pubsub.PubSubCommandHandler;
 import com.lambdaworks.redis.pubsub.RedisPubSubConnection;
@@ -12,30 +14,38 @@ import io.netty.channel.*;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.ChannelGroupFuture;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.util.HashedWheelTimer;
-import io.netty.util.Timer;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.GlobalEventExecutor;
 
+import java.io.File;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.*;
 import java.util.concurrent.*;
 
 /**
  * A scalable thread-safe <a href="http://redis.io/">Redis</a> client. Multiple threads
- * may share one connection provided they avoid blocking and transactional operations
- * such as BLPOP and MULTI/EXEC.
+ * may share one connection provided they avoid transactional operations such as
+ * MULTI/EXEC. Blocking operations such as BLPOP are sent over dedicated connections,
+ * see {@link #setBlockingPoolSize}.
  *
  * @author Will Glozer
  */
 public class RedisClient {
-    private EventLoopGroup group;
+    private ClientResources resources;
+    private boolean shared;
     private Bootstrap bootstrap;
-    private HashedWheelTimer timer;
     private ChannelGroup channels;
+    private Set<ConnectionWatchdog> watchdogs;
     private long timeout;
     private TimeUnit unit;
+    private long standbyInterval;
+    private long readerIdle;
+    private long writerIdle;
+    private long heartbeatTimeout;
+    private boolean lazy;
+    private int blockingPoolSize;
 
     /**
      * Create a new client that connects to the supplied host on the default port.
@@ -55,17 +65,63 @@ public class RedisClient {
      * @param port    Server port.
      */
     public RedisClient(String host, int port) {
+        this(host, port, new ClientResources(), false);
+    }
 
-        InetSocketAddress addr = new InetSocketAddress(host, port);
+    /**
+     * Create a new client that connects to the server listening on the supplied
+     * Unix domain socket. Requires the native epoll transport.
+     *
+     * @param socket  Path of the server's Unix domain socket.
+     */
+    public RedisClient(File socket) {
+        this(socket, new ClientResources(), false);
+    }
+
+    /**
+     * Create a new client that connects to the server listening on the supplied
+     * Unix domain socket using threads from the supplied {@link ClientResources}.
+     * Requires the native epoll transport.
+     *
+     * @param socket    Path of the server's Unix domain socket.
+     * @param resources Shared client resources.
+     */
+    public RedisClient(File socket, ClientResources resources) {
+        this(socket, resources, true);
+    }
+
+    /**
+     * Create a new client that connects to the supplied host and port using
+     * threads from the supplied {@link ClientResources}, which may be shared
+     * with other clients.
+     *
+     * @param host      Server hostname.
+     * @param port      Server port.
+     * @param resources Shared client resources.
+     */
+    public RedisClient(String host, int port, ClientResources resources) {
+        this(host, port, resources, true);
+    }
+
+    private RedisClient(String host, int port, ClientResources resources, boolean shared) {
+        this(new InetSocketAddress(host, port), resources.channelClass(), resources, shared);
+    }
+
+    private RedisClient(File socket, ClientResources resources, boolean shared) {
+        this(new DomainSocketAddress(socket), resources.domainSocketChannelClass(), resources, shared);
+    }
 
-        group = new NioEventLoopGroup();
-        bootstrap = new Bootstrap().channel(NioSocketChannel.class).group(group).remoteAddress(addr);
+    private RedisClient(SocketAddress addr, Class<? extends Channel> channelClass, ClientResources resources, boolean shared) {
+        this.resources = resources;
+        this.shared    = shared;
+
+        bootstrap = new Bootstrap().channel(channelClass).remoteAddress(addr);
 
         setDefaultTimeout(60, TimeUnit.SECONDS);
+        setBlockingPoolSize(2);
 
-        channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
-        timer    = new HashedWheelTimer();
-        timer.start();
+        channels  = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+        watchdogs = Collections.newSetFromMap(new WeakHashMap<ConnectionWatchdog, Boolean>());
     }
 
     /**
@@ -82,6 +138,120 @@ public class RedisClient {
         bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) unit.toMillis(timeout));
     }
 
+    /**
+     * Connect new and existing connections to a different server, for example
+     * after a failover. Connected channels are closed and re-established to the
+     * new address, commands queued on them are resent there.
+     *
+     * @param host    Server hostname.
+     * @param port    Server port.
+     */
+    public void setRemoteAddress(String host, int port) {
+        InetSocketAddress addr = new InetSocketAddress(host, port);
+        bootstrap.remoteAddress(addr);
+
+        List<ConnectionWatchdog> list;
+        synchronized (watchdogs) {
+            list = new ArrayList<ConnectionWatchdog>(watchdogs);
+        }
+        for (ConnectionWatchdog watchdog : list) {
+            watchdog.setRemoteAddress(addr);
+        }
+    }
+
+    /**
+     * Enable or disable Nagle's algorithm on new connections.
+     *
+     * @param noDelay   true to disable Nagle's algorithm.
+     */
+    public void setTcpNoDelay(boolean noDelay) {
+        bootstrap.option(ChannelOption.TCP_NODELAY, noDelay);
+    }
+
+    /**
+     * Enable or disable TCP keepalive on new connections.
+     *
+     * @param keepAlive true to enable keepalive.
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        bootstrap.option(ChannelOption.SO_KEEPALIVE, keepAlive);
+    }
+
+    /**
+     * Set the size of the socket send buffer of new connections.
+     *
+     * @param size  Buffer size in bytes.
+     */
+    public void setSendBufferSize(int size) {
+        bootstrap.option(ChannelOption.SO_SNDBUF, size);
+    }
+
+    /**
+     * Set the size of the socket receive buffer of new connections.
+     *
+     * @param size  Buffer size in bytes.
+     */
+    public void setReceiveBufferSize(int size) {
+        bootstrap.option(ChannelOption.SO_RCVBUF, size);
+    }
+
+    /**
+     * Keep a pre-established standby channel for each new connection, health-checked
+     * with PING at the supplied interval. When a connection's channel is lost its
+     * pending commands are resent on the standby immediately instead of after a
+     * reconnect. A zero interval disables the standby.
+     *
+     * @param interval  Interval between health checks of the standby.
+     * @param unit      Unit of time for the interval.
+     */
+    public void setHotStandby(long interval, TimeUnit unit) {
+        this.standbyInterval = unit.toMillis(interval);
+    }
+
+    /**
+     * Send a PING on new connections when no data has been read or written for
+     * the supplied idle periods and close the connection if no reply arrives
+     * within the timeout. This detects half-open connections so the connection
+     * is re-established in seconds rather than after the OS TCP timeout. Pub/sub
+     * connections do not send heartbeats. A zero period disables that check.
+     *
+     * @param readerIdle    Time without reads before a PING is sent.
+     * @param writerIdle    Time without writes before a PING is sent.
+     * @param timeout       Time to wait for the PING reply.
+     * @param unit          Unit of time for the arguments.
+     */
+    public void setHeartbeat(long readerIdle, long writerIdle, long timeout, TimeUnit unit) {
+        this.readerIdle       = unit.toMillis(readerIdle);
+        this.writerIdle       = unit.toMillis(writerIdle);
+        this.heartbeatTimeout = unit.toMillis(timeout);
+    }
+
+    /**
+     * Defer connecting new connections until their first command is dispatched.
+     * Commands are queued until the connection is established and connection
+     * failures are retried in the background rather than reported to the caller.
+     *
+     * @param lazy  true to connect on first use.
+     */
+    public void setLazyConnect(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Set the number of idle dedicated connections kept by each connection for
+     * blocking commands. BLPOP, BRPOP and BRPOPLPUSH dispatched on a connection
+     * are then sent over a dedicated connection so they never stall the
+     * commands pipelined behind them, but they are no longer ordered relative
+     * to those commands and each opens an extra socket. A size of zero, the
+     * default, sends blocking commands over the connection they are
+     * dispatched on.
+     *
+     * @param size  Maximum number of idle dedicated connections, or 0 to disable.
+     */
+    public void setBlockingPoolSize(int size) {
+        this.blockingPoolSize = size;
+    }
+
     /**
      * Open a new synchronous connection to the redis server that treats
      * keys and values as UTF-8 strings.
@@ -112,6 +282,16 @@ public class RedisClient {
         return connectPubSub(new Utf8StringCodec());
     }
 
+    /**
+     * Open a new asynchronous connection to the redis server without blocking
+     * the calling thread. The connection treats keys and values as UTF-8 strings.
+     *
+     * @return A future connection.
+     */
+    public ListenableFuture<RedisAsyncConnection<String, String>> connectFuture() {
+        return connectFuture(new Utf8StringCodec());
+    }
+
     /**
      * Open a new synchronous connection to the redis server. Use the supplied
      * {@link RedisCodec codec} to encode/decode keys and values.
@@ -133,12 +313,91 @@ public class RedisClient {
      * @return A new connection.
      */
     public <K, V> RedisAsyncConnection<K, V> connectAsync(RedisCodec<K, V> codec) {
+        return await(connectFuture(codec));
+    }
+
+    /**
+     * Open a new asynchronous connection to the redis server without blocking
+     * the calling thread. Use the supplied {@link RedisCodec codec} to
+     * encode/decode keys and values.
+     *
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A future connection.
+     */
+    public <K, V> ListenableFuture<RedisAsyncConnection<K, V>> connectFuture(RedisCodec<K, V> codec) {
+        return connectFuture(codec, false);
+    }
+
+    /**
+     * Open a new asynchronous connection to the redis server without blocking
+     * the calling thread.
+     *
+     * @param codec     Use this codec to encode/decode keys and values.
+     * @param pooled    true if the connection belongs to a connection pool and
+     *                  should not open a pool of its own for blocking commands.
+     *
+     * @return A future connection.
+     */
+    <K, V> ListenableFuture<RedisAsyncConnection<K, V>> connectFuture(RedisCodec<K, V> codec, boolean pooled) {
         BlockingQueue<Command<K, V, ?>> queue = new LinkedBlockingQueue<Command<K, V, ?>>();
 
         CommandHandler<K, V> handler = new CommandHandler<K, V>(queue);
         RedisAsyncConnection<K, V> connection = new RedisAsyncConnection<K, V>(queue, codec, timeout, unit);
+        connection.setExecutor(executor());
+        connection.setHeartbeatTimeout(heartbeatTimeout, TimeUnit.MILLISECONDS);
+        if (!pooled && blockingPoolSize > 0) {
+            connection.setBlockingPool(new RedisConnectionPool<K, V>(this, codec, blockingPoolSize));
+        }
 
-        return connect(handler, connection);
+        return connect(handler, connection, codec, heartbeatTimeout > 0);
+    }
+
+    /**
+     * Open a new {@link RedisLaneConnection} to the redis server, made of a
+     * latency lane and a bulk lane. Use the supplied {@link RedisCodec codec}
+     * to encode/decode keys and values.
+     *
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A new connection.
+     */
+    public <K, V> RedisLaneConnection<K, V> connectLanes(RedisCodec<K, V> codec) {
+        RedisAsyncConnection<K, V> latency = connectAsync(codec);
+        RedisAsyncConnection<K, V> bulk = connectAsync(codec);
+        return new RedisLaneConnection<K, V>(latency, bulk, codec, timeout, unit);
+    }
+
+    /**
+     * Create a {@link RedisBatcher} that combines GET and HGET calls on the
+     * supplied connection into MGET and HMGET commands. Batches are timed on
+     * this client's event loop.
+     *
+     * @param connection    Connection the batched commands are sent over.
+     * @param maxSize       Maximum number of calls in a batch.
+     * @param window        Maximum time a call waits for other calls.
+     * @param unit          Unit of time for the window.
+     *
+     * @return A new batcher.
+     */
+    public <K, V> RedisBatcher<K, V> batcher(RedisAsyncConnection<K, V> connection, int maxSize, long window, TimeUnit unit) {
+        return new RedisBatcher<K, V>(connection, resources.eventLoopGroup(), maxSize, window, unit);
+    }
+
+    /**
+     * Create a {@link RedisWriteCombiner} that combines increments and SETs of
+     * the same keys on the supplied connection. Windows are timed on this
+     * client's event loop.
+     *
+     * @param connection    Connection the combined commands are sent over.
+     * @param maxKeys       Maximum number of keys with pending writes.
+     * @param window        Maximum time a write is buffered.
+     * @param unit          Unit of time for the window.
+     *
+     * @return A new write combiner.
+     */
+    public <K, V> RedisWriteCombiner<K, V> combiner(RedisAsyncConnection<K, V> connection, int maxKeys, long window, TimeUnit unit) {
+        return new RedisWriteCombiner<K, V>(connection, resources.eventLoopGroup(), maxKeys, window, unit);
     }
 
     /**
@@ -150,37 +409,101 @@ public class RedisClient {
      * @return A new pub/sub connection.
      */
     public <K, V> RedisPubSubConnection<K, V> connectPubSub(RedisCodec<K, V> codec) {
+        return await(connectPubSubFuture(codec));
+    }
+
+    /**
+     * Open a new pub/sub connection to the redis server without blocking the
+     * calling thread. Use the supplied {@link RedisCodec codec} to encode/decode
+     * keys and values.
+     *
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A future pub/sub connection.
+     */
+    public <K, V> ListenableFuture<RedisPubSubConnection<K, V>> connectPubSubFuture(RedisCodec<K, V> codec) {
         BlockingQueue<Command<K, V, ?>> queue = new LinkedBlockingQueue<Command<K, V, ?>>();
 
         PubSubCommandHandler<K, V> handler = new PubSubCommandHandler<K, V>(queue, codec);
         RedisPubSubConnection<K, V> connection = new RedisPubSubConnection<K, V>(queue, codec, timeout, unit);
+        connection.setExecutor(executor());
 
-        return connect(handler, connection);
+        return connect(handler, connection, codec, false);
     }
 
-    private <K, V, T extends RedisAsyncConnection<K, V>> T connect(final CommandHandler<K, V> handler, final T connection) {
-        try {
-            final ConnectionWatchdog watchdog = new ConnectionWatchdog(bootstrap, channels, timer);
-            bootstrap.handler(new ChannelInitializer<Channel>() {
-                @Override
-                protected void initChannel(Channel ch) throws Exception {
-                    ch.pipeline().addLast(watchdog, handler, connection);
+    private <K, V, T extends RedisAsyncConnection<K, V>> ListenableFuture<T> connect(final CommandHandler<K, V> handler, final T connection, RedisCodec<K, V> codec,
+                                                                                    final boolean heartbeat) {
+        final DeferredFuture<T> future = new DeferredFuture<T>();
+        future.setExecutor(executor());
+
+        Bootstrap bootstrap = this.bootstrap.clone().group(resources.eventLoopGroup());
+        final ConnectionWatchdog watchdog = new ConnectionWatchdog(bootstrap, channels, resources.timer());
+        ChannelInitializer<Channel> initializer = new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                if (heartbeat) {
+                    ch.pipeline().addLast(new IdleStateHandler(readerIdle, writerIdle, 0, TimeUnit.MILLISECONDS));
                 }
-            });
+                ch.pipeline().addLast(watchdog, handler, connection);
+            }
+        };
+        bootstrap.handler(initializer);
+
+        if (standbyInterval > 0) {
+            HotStandby<K, V> standby = new HotStandby<K, V>(bootstrap, initializer, resources.timer(), connection, codec, standbyInterval, TimeUnit.MILLISECONDS);
+            watchdog.setStandby(standby);
+        }
+
+        connection.setWatchdog(watchdog);
+        synchronized (watchdogs) {
+            watchdogs.add(watchdog);
+        }
+
+        if (lazy) {
+            future.resolve(connection);
+            return future;
+        }
 
-            bootstrap.connect().sync();
+        bootstrap.connect().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                if (f.isSuccess()) {
+                    watchdog.setReconnect(true);
+                    future.resolve(connection);
+                } else {
+                    future.failure(f.cause());
+                }
+            }
+        });
 
-            watchdog.setReconnect(true);
+        return future;
+    }
 
-            return connection;
-        } catch (Throwable e) {
-            throw new RedisException("Unable to connect", e);
+    private <T> T await(ListenableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new RedisException("Unable to connect", e.getCause());
+        } catch (InterruptedException e) {
+            throw new RedisCommandInterruptedException(e);
         }
     }
 
+    /**
+     * Get the executor that runs promise callbacks of this client's connections.
+     * Clients with their own resources use the JVM-wide default executor so
+     * each client does not start a callback thread pool of its own.
+     *
+     * @return The executor of shared resources, or null for the default.
+     */
+    private Executor executor() {
+        return shared ? resources.executor() : null;
+    }
+
     /**
      * Shutdown this client and close all open connections. The client should be
-     * discarded after calling shutdown.
+     * discarded after calling shutdown. Shared {@link ClientResources} are not
+     * shut down.
      */
     public void shutdown() {
         for (Channel c : channels) {
@@ -190,8 +513,7 @@ public class RedisClient {
         }
         ChannelGroupFuture future = channels.close();
         future.awaitUninterruptibly();
-        group.shutdownGracefully().syncUninterruptibly();
-        timer.stop();
+        if (!shared) resources.shutdown();
     }
 }
 
@@ -15,8 +15,9 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
  * A synchronous thread-safe connection to a redis server. Multiple threads may
- * share one {@link RedisConnection} provided they avoid blocking and transactional
- * operations such as {@link #blpop} and {@link #multi()}/{@link #exec}.
+ * share one {@link RedisConnection} provided they avoid transactional operations
+ * such as {@link #multi()}/{@link #exec}. Blocking operations such as {@link #blpop}
+ * are sent over a dedicated connection when the client has a blocking pool.
  *
  * A {@link ConnectionWatchdog} monitors each connection and reconnects
  * automatically until {@link #close} is called. All pending commands will be
@@ -52,10 +53,37 @@ public class RedisConnection<K, V> {
         c.setTimeout(timeout, unit);
     }
 
+    /**
+     * Split writes with many arguments into several commands.
+     *
+     * @param maxArgs   Maximum number of arguments per command, or 0 for no limit.
+     * @param maxBytes  Approximate maximum size of a command in bytes, or 0 for no limit.
+     *
+     * @see RedisAsyncConnection#setChunking
+     */
+    public void setChunking(int maxArgs, int maxBytes) {
+        c.setChunking(maxArgs, maxBytes);
+    }
+
+    /**
+     * Combine identical reads in flight.
+     *
+     * @param enabled   true to combine identical reads.
+     *
+     * @see RedisAsyncConnection#setSingleFlight
+     */
+    public void setSingleFlight(boolean enabled) {
+        c.setSingleFlight(enabled);
+    }
+
     public Long append(K key, V value) {
         return await(c.append(key, value));
     }
 
+    public String asking() {
+        return await(c.asking());
+    }
+
     public String auth(String password) {
         return c.auth(password);
     }
@@ -122,6 +150,10 @@ public class RedisConnection<K, V> {
         return await(c.clientList());
     }
 
+    public String clusterNodes() {
+        return await(c.clusterNodes());
+    }
+
     public List<String> configGet(String parameter) {
         return await(c.configGet(parameter));
     }
@@ -154,6 +186,10 @@ public class RedisConnection<K, V> {
         return await(c.del(keys));
     }
 
+    public Boolean delIfEquals(K key, V value) {
+        return await(c.delIfEquals(key, value));
+    }
+
     public String discard() {
         return await(c.discard());
     }
@@ -210,6 +246,21 @@ public class RedisConnection<K, V> {
         return (T) await(c.evalsha(digest, type, keys, values));
     }
 
+    /**
+     * Run a registered script with EVALSHA, falling back to EVAL if the server
+     * does not have the script cached.
+     *
+     * @param script    Script to run.
+     * @param keys      Redis keys to pass to the script.
+     * @param values    Values to pass to the script.
+     *
+     * @return The result of the script.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T evalsha(RedisScript<K, V> script, K[] keys, V... values) {
+        return (T) await(c.evalsha(script, keys, values));
+    }
+
     public Boolean exists(K key) {
         return await(c.exists(key));
     }
@@ -242,6 +293,10 @@ public class RedisConnection<K, V> {
         return await(c.get(key));
     }
 
+    public V getOrSetex(K key, long seconds, V value) {
+        return await(c.getOrSetex(key, seconds, value));
+    }
+
     public Long getbit(K key, long offset) {
         return await(c.getbit(key, offset));
     }
@@ -290,6 +345,18 @@ public class RedisConnection<K, V> {
         return await(c.hmget(key, fields));
     }
 
+    public ScanResult<KeyValue<K, V>> hscan(K key, String cursor) {
+        return await(c.hscan(key, cursor));
+    }
+
+    public ScanResult<KeyValue<K, V>> hscan(K key, String cursor, K match, long count) {
+        return await(c.hscan(key, cursor, match, count));
+    }
+
+    public ScanIterator<K, V, KeyValue<K, V>> hscanIterator(K key, K match, long count) {
+        return c.hscanIterator(key, match, count);
+    }
+
     public String hmset(K key, Map<K, V> map) {
         return await(c.hmset(key, map));
     }
@@ -314,6 +381,10 @@ public class RedisConnection<K, V> {
         return await(c.incrby(key, amount));
     }
 
+    public Long incrbyExpire(K key, long amount, long seconds) {
+        return await(c.incrbyExpire(key, amount, seconds));
+    }
+
     public Double incrbyfloat(K key, double amount) {
         return await(c.incrbyfloat(key, amount));
     }
@@ -354,6 +425,10 @@ public class RedisConnection<K, V> {
         return await(c.lpush(key, values));
     }
 
+    public Long lpushTrim(K key, long maxLength, V... values) {
+        return await(c.lpushTrim(key, maxLength, values));
+    }
+
     public Long lpushx(K key, V value) {
         return await(c.lpushx(key, value));
     }
@@ -362,6 +437,10 @@ public class RedisConnection<K, V> {
         return await(c.lrange(key, start, stop));
     }
 
+    public RangeIterator<K, V, V> lrangeIterator(K key, int pageSize) {
+        return c.lrangeIterator(key, pageSize);
+    }
+
     public Long lrem(K key, long count, V value) {
         return await(c.lrem(key, count, value));
     }
@@ -483,10 +562,43 @@ public class RedisConnection<K, V> {
         return await(c.save());
     }
 
+    public ScanResult<K> scan(String cursor) {
+        return await(c.scan(cursor));
+    }
+
+    public ScanResult<K> scan(String cursor, K match, long count) {
+        return await(c.scan(cursor, match, count));
+    }
+
+    /**
+     * Iterate over the keys of the database with SCAN, see
+     * {@link RedisAsyncConnection#scanIterator}.
+     *
+     * @param match     Pattern keys must match, or null for all keys.
+     * @param count     Hint of the number of keys per page, or 0 for the default.
+     *
+     * @return An iterator over the keys.
+     */
+    public ScanIterator<K, V, K> scanIterator(K match, long count) {
+        return c.scanIterator(match, count);
+    }
+
     public Long scard(K key) {
         return await(c.scard(key));
     }
 
+    /**
+     * Register a Lua script with this connection, see {@link RedisAsyncConnection#script}.
+     *
+     * @param script    Lua script.
+     * @param type      Script output type.
+     *
+     * @return A handle to run the script.
+     */
+    public RedisScript<K, V> script(V script, ScriptOutputType type) {
+        return c.script(script, type);
+    }
+
     public List<Boolean> scriptExists(String... digests) {
         return await(c.scriptExists(digests));
     }
@@ -515,6 +627,10 @@ public class RedisConnection<K, V> {
         return c.select(db);
     }
 
+    public List<String> sentinelGetMasterAddrByName(String masterName) {
+        return await(c.sentinelGetMasterAddrByName(masterName));
+    }
+
     public String set(K key, V value) {
         return await(c.set(key, value));
     }
@@ -616,6 +732,18 @@ public class RedisConnection<K, V> {
         return await(c.srem(key, members));
     }
 
+    public ScanResult<V> sscan(K key, String cursor) {
+        return await(c.sscan(key, cursor));
+    }
+
+    public ScanResult<V> sscan(K key, String cursor, V match, long count) {
+        return await(c.sscan(key, cursor, match, count));
+    }
+
+    public ScanIterator<K, V, V> sscanIterator(K key, V match, long count) {
+        return c.sscanIterator(key, match, count);
+    }
+
     public Set<V> sunion(K... keys) {
         return await(c.sunion(keys));
     }
@@ -632,6 +760,16 @@ public class RedisConnection<K, V> {
         return await(c.strlen(key));
     }
 
+    /**
+     * Start building a MULTI/EXEC transaction that is written to this
+     * connection as one block by {@link RedisTransaction#exec}.
+     *
+     * @return A new transaction.
+     */
+    public RedisTransaction<K, V> transaction() {
+        return c.transaction();
+    }
+
     public Long ttl(K key) {
         return await(c.ttl(key));
     }
@@ -720,6 +858,10 @@ public class RedisConnection<K, V> {
         return await(c.zrangebyscoreWithScores(key, min, max, offset, count));
     }
 
+    public RangeIterator<K, V, ScoredValue<V>> zrangebyscoreIterator(K key, String min, String max, int pageSize) {
+        return c.zrangebyscoreIterator(key, min, max, pageSize);
+    }
+
     public Long zrank(K key, V member) {
         return await(c.zrank(key, member));
     }
@@ -784,6 +926,18 @@ public class RedisConnection<K, V> {
         return await(c.zrevrank(key, member));
     }
 
+    public ScanResult<ScoredValue<V>> zscan(K key, String cursor) {
+        return await(c.zscan(key, cursor));
+    }
+
+    public ScanResult<ScoredValue<V>> zscan(K key, String cursor, V match, long count) {
+        return await(c.zscan(key, cursor, match, count));
+    }
+
+    public ScanIterator<K, V, ScoredValue<V>> zscanIterator(K key, V match, long count) {
+        return c.zscanIterator(key, match, count);
+    }
+
     public Double zscore(K key, V member) {
         return await(c.zscore(key, member));
     }
@@ -0,0 +1,96 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.concurrent.DeferredFuture;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A pool of {@link RedisAsyncConnection connections} that are used by one
+ * caller at a time, for blocking and transactional commands that would stall
+ * or interleave with other commands on a shared connection. Connections are
+ * opened on demand and up to maxIdle released connections are kept open for
+ * reuse.
+ *
+ * @author Will Glozer
+ */
+public class RedisConnectionPool<K, V> {
+    private RedisClient client;
+    private RedisCodec<K, V> codec;
+    private int maxIdle;
+    private LinkedList<RedisAsyncConnection<K, V>> idle;
+    private boolean closed;
+
+    /**
+     * Create a new pool of connections opened by the supplied client.
+     *
+     * @param client    Client that opens new connections.
+     * @param codec     Codec used to encode/decode keys and values.
+     * @param maxIdle   Maximum number of released connections kept open.
+     */
+    public RedisConnectionPool(RedisClient client, RedisCodec<K, V> codec, int maxIdle) {
+        this.client  = client;
+        this.codec   = codec;
+        this.maxIdle = maxIdle;
+        this.idle    = new LinkedList<RedisAsyncConnection<K, V>>();
+    }
+
+    /**
+     * Take a connection from the pool, opening a new one when none is idle.
+     * The calling thread is not blocked while a new connection is opened.
+     *
+     * @return A future connection for the exclusive use of the caller.
+     */
+    public ListenableFuture<RedisAsyncConnection<K, V>> borrow() {
+        RedisAsyncConnection<K, V> connection;
+        synchronized (this) {
+            if (closed) throw new RedisException("Connection pool is closed");
+            connection = idle.poll();
+        }
+
+        if (connection == null) {
+            return client.connectFuture(codec, true);
+        }
+
+        DeferredFuture<RedisAsyncConnection<K, V>> future = new DeferredFuture<RedisAsyncConnection<K, V>>();
+        future.resolve(connection);
+        return future;
+    }
+
+    /**
+     * Return a borrowed connection to the pool. The connection is closed if
+     * the pool already holds maxIdle connections or has been closed.
+     *
+     * @param connection    Connection to return.
+     */
+    public void release(RedisAsyncConnection<K, V> connection) {
+        synchronized (this) {
+            if (!closed && idle.size() < maxIdle) {
+                idle.add(connection);
+                return;
+            }
+        }
+        connection.close();
+    }
+
+    /**
+     * Close the pool and its idle connections. Borrowed connections are closed
+     * when they are released.
+     */
+    public void close() {
+        List<RedisAsyncConnection<K, V>> list;
+        synchronized (this) {
+            closed = true;
+            list = new ArrayList<RedisAsyncConnection<K, V>>(idle);
+            idle.clear();
+        }
+        for (RedisAsyncConnection<K, V> connection : list) {
+            connection.close();
+        }
+    }
+}
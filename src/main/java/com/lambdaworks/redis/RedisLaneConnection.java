@@ -0,0 +1,202 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandArgs;
+import com.lambdaworks.redis.protocol.CommandType;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.lambdaworks.redis.protocol.CommandType.*;
+
+/**
+ * An asynchronous connection that sends commands over two connections to the
+ * same server, a latency lane for small interactive requests and a bulk lane
+ * for commands with large requests or replies, so small requests never wait
+ * behind bulk ones.
+ *
+ * Reads of whole collections or ranges, such as KEYS, HGETALL and LRANGE, and
+ * commands with more args than the bulk threshold go to the bulk lane. Other
+ * reads go to the bulk lane when the last reply for their key had at least the
+ * bulk threshold of elements, or bytes for a single value. Commands may also
+ * be sent to a lane explicitly with {@link #lane}.
+ *
+ * Commands sent over different lanes are not ordered relative to each other;
+ * wait for a write to complete before reading the key over the other lane.
+ *
+ * @author Will Glozer
+ */
+public class RedisLaneConnection<K, V> extends AbstractRoutingConnection<K, V> {
+    /**
+     * Lanes of a connection.
+     */
+    public enum Lane {
+        LATENCY, BULK
+    }
+
+    private static final EnumSet<CommandType> BULK = EnumSet.of(
+        KEYS, DUMP, HGETALL, HKEYS, HVALS, SMEMBERS, SDIFF, SINTER, SUNION, LRANGE, ZRANGE, ZRANGEBYSCORE);
+
+    private static final int HISTORY_SIZE = 1024;
+
+    private RedisAsyncConnection<K, V> latency;
+    private RedisAsyncConnection<K, V> bulk;
+    private volatile int threshold;
+    private Map<ByteBuffer, Integer> large;
+
+    /**
+     * Initialize a new connection.
+     *
+     * @param latency   Connection for small requests.
+     * @param bulk      Connection for large requests and replies.
+     * @param codec     Codec used to encode/decode keys and values.
+     * @param timeout   Maximum time to wait for a response.
+     * @param unit      Unit of time for the timeout.
+     */
+    public RedisLaneConnection(RedisAsyncConnection<K, V> latency, RedisAsyncConnection<K, V> bulk, RedisCodec<K, V> codec,
+                               long timeout, TimeUnit unit) {
+        super(codec, timeout, unit);
+        this.latency   = latency;
+        this.bulk      = bulk;
+        this.threshold = 1000;
+        this.large     = new LinkedHashMap<ByteBuffer, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Integer> eldest) {
+                return size() > HISTORY_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Set the number of args, reply elements or value bytes at which commands
+     * are sent over the bulk lane.
+     *
+     * @param threshold Bulk threshold.
+     */
+    public void setBulkThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Get the connection of a lane, for sending commands to that lane explicitly.
+     *
+     * @param lane  Lane.
+     *
+     * @return The lane's connection.
+     */
+    public RedisAsyncConnection<K, V> lane(Lane lane) {
+        return lane == Lane.BULK ? bulk : latency;
+    }
+
+    /**
+     * Send a command over its lane, remembering the reply size of reads.
+     *
+     * @param cmd   Command to send.
+     *
+     * @return The command.
+     */
+    @Override
+    public <T> Command<K, V, T> dispatch(Command<K, V, T> cmd) {
+        RedisAsyncConnection<K, V> lane = route(cmd);
+        ByteBuffer key = readKey(cmd);
+        if (key != null) record(cmd, key);
+        return lane.dispatch(cmd);
+    }
+
+    @Override
+    protected RedisAsyncConnection<K, V> route(Command<K, V, ?> cmd) {
+        if (BULK.contains(cmd.type)) return bulk;
+
+        CommandArgs<K, V> args = cmd.getArgs();
+        if (args != null && args.count() >= threshold) return bulk;
+
+        ByteBuffer key = readKey(cmd);
+        if (key == null) return latency;
+
+        synchronized (large) {
+            return large.containsKey(key) ? bulk : latency;
+        }
+    }
+
+    /**
+     * Send the commands of a transaction over the latency lane.
+     *
+     * @param cmds  Commands to send, in order.
+     */
+    @Override
+    public void dispatchAll(List<? extends Command<K, V, ?>> cmds) {
+        latency.dispatchAll(cmds);
+    }
+
+    @Override
+    protected Object partition(byte[] key) {
+        return this;
+    }
+
+    @Override
+    protected Collection<? extends RedisAsyncConnection<K, V>> connections() {
+        return Arrays.asList(latency, bulk);
+    }
+
+    @Override
+    public String auth(String password) {
+        latency.auth(password);
+        return bulk.auth(password);
+    }
+
+    @Override
+    public String select(int db) {
+        latency.select(db);
+        return bulk.select(db);
+    }
+
+    /**
+     * Get the key of a read that is routed by the size of its last reply.
+     *
+     * @param cmd   Command.
+     *
+     * @return The encoded key, or null if the command is routed otherwise.
+     */
+    private ByteBuffer readKey(Command<K, V, ?> cmd) {
+        CommandArgs<K, V> args = cmd.getArgs();
+        if (BULK.contains(cmd.type) || args == null || args.count() >= threshold) return null;
+        if (!cmd.type.isReadOnly() || args.firstKey() == null) return null;
+        return ByteBuffer.wrap(args.firstKey());
+    }
+
+    /**
+     * Remember the key of a read when its reply reaches the bulk threshold,
+     * and forget it when a later reply is smaller.
+     *
+     * @param cmd   Read command.
+     * @param key   Encoded key of the command.
+     */
+    private <T> void record(Command<K, V, T> cmd, final ByteBuffer key) {
+        cmd.then(new Callback<T>() {
+            @Override
+            public void call(T reply) {
+                int size = size(reply);
+                synchronized (large) {
+                    if (size >= threshold) {
+                        large.put(key, size);
+                    } else if (!large.isEmpty()) {
+                        large.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    private int size(Object reply) {
+        if (reply instanceof Collection) return ((Collection<?>) reply).size();
+        if (reply instanceof Map)        return ((Map<?, ?>) reply).size() * 2;
+        if (reply instanceof String)     return ((String) reply).length();
+        if (reply instanceof byte[])     return ((byte[]) reply).length;
+        return 1;
+    }
+}
@@ -0,0 +1,322 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.DeferredFuture;
+import com.lambdaworks.redis.concurrent.FailCallback;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+import com.lambdaworks.redis.protocol.Charsets;
+import com.lambdaworks.redis.pubsub.RedisPubSubAdapter;
+import com.lambdaworks.redis.pubsub.RedisPubSubConnection;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process cache of GET, HGET and HGETALL replies for read-mostly keys.
+ * Entries are invalidated by <a href="http://redis.io/topics/notifications">keyspace
+ * notifications</a> received over a {@link RedisPubSubConnection}, so the server
+ * must have notify-keyspace-events enabled for keyspace events of all classes,
+ * for example "KA".
+ *
+ * At most maxKeys keys are cached, the least recently used key is evicted
+ * first. A key is cached for at most the TTL, or until its expiry on the server
+ * as reported by PTTL if that is sooner.
+ *
+ * Notifications sent while the pub/sub connection is down are lost, so the
+ * cache is bypassed while the pub/sub connection is not subscribed and it is
+ * emptied when the subscription is renewed after reconnecting. FLUSHDB and
+ * FLUSHALL don't generate keyspace events, call {@link #clear} after them.
+ *
+ * @author Will Glozer
+ */
+public class RedisNearCache<K, V> {
+    private static final Object MISS  = new Object();
+    private static final Object VALUE = new Object();
+    private static final Object HASH  = new Object();
+
+    private static final byte[] PATTERN = "__keyspace@*__:*".getBytes(Charsets.ASCII);
+    private static final int PREFIX = "__keyspace@".length();
+
+    private RedisAsyncConnection<K, V> connection;
+    private RedisPubSubConnection<K, V> pubsub;
+    private RedisCodec<K, V> codec;
+    private long ttl;
+    private K pattern;
+    private Listener listener;
+    private Map<ByteBuffer, Slot> cache;
+    private Map<ByteBuffer, Load> loading;
+    private boolean subscribed;
+
+    private AtomicLong hits;
+    private AtomicLong misses;
+
+    /**
+     * Create a new near cache and subscribe to keyspace notifications.
+     *
+     * @param connection    Connection replies are read from.
+     * @param pubsub        Connection keyspace notifications are received on.
+     * @param maxKeys       Maximum number of cached keys.
+     * @param ttl           Maximum time a key is cached.
+     * @param unit          Unit of time for the TTL.
+     */
+    @SuppressWarnings("unchecked")
+    public RedisNearCache(RedisAsyncConnection<K, V> connection, RedisPubSubConnection<K, V> pubsub, final int maxKeys,
+                          long ttl, TimeUnit unit) {
+        this.connection = connection;
+        this.pubsub     = pubsub;
+        this.codec      = connection.codec;
+        this.ttl        = unit.toNanos(ttl);
+        this.pattern    = codec.decodeKey(ByteBuffer.wrap(PATTERN));
+        this.listener   = new Listener();
+        this.loading    = new HashMap<ByteBuffer, Load>();
+        this.hits       = new AtomicLong();
+        this.misses     = new AtomicLong();
+        this.cache      = new LinkedHashMap<ByteBuffer, Slot>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Slot> eldest) {
+                return size() > maxKeys;
+            }
+        };
+
+        pubsub.addListener(listener);
+        pubsub.psubscribe(pattern);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ListenableFuture<V> get(K key) {
+        ByteBuffer k = encode(key);
+        Object cached = lookup(k, VALUE);
+        if (cached != MISS) return resolved((V) cached);
+
+        Load load = begin(k);
+        if (load == null) return connection.get(key);
+        return load.fetch(VALUE, connection.get(key), connection.pttl(key));
+    }
+
+    @SuppressWarnings("unchecked")
+    public ListenableFuture<V> hget(K key, K field) {
+        ByteBuffer k = encode(key);
+        Object cached = lookup(k, field);
+        if (cached != MISS) return resolved((V) cached);
+
+        Load load = begin(k);
+        if (load == null) return connection.hget(key, field);
+        return load.fetch(field, connection.hget(key, field), connection.pttl(key));
+    }
+
+    @SuppressWarnings("unchecked")
+    public ListenableFuture<Map<K, V>> hgetall(K key) {
+        ByteBuffer k = encode(key);
+        Object cached = lookup(k, HASH);
+        if (cached != MISS) return this.<Map<K, V>>resolved(new LinkedHashMap<K, V>((Map<K, V>) cached));
+
+        Load load = begin(k);
+        if (load == null) return connection.hgetall(key);
+        return load.fetch(HASH, connection.hgetall(key), connection.pttl(key));
+    }
+
+    /**
+     * Remove a key from the cache.
+     *
+     * @param key   Key to remove.
+     */
+    public synchronized void invalidate(K key) {
+        invalidate(encode(key));
+    }
+
+    /**
+     * Remove all keys from the cache.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        loading.clear();
+    }
+
+    /**
+     * Get the number of cached keys.
+     *
+     * @return The number of keys.
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Get the number of reads answered from the cache.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of reads sent to the server.
+     *
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Stop receiving keyspace notifications and empty the cache. The
+     * connections are not closed.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void close() {
+        pubsub.removeListener(listener);
+        pubsub.punsubscribe(pattern);
+        subscribed = false;
+        clear();
+    }
+
+    private ByteBuffer encode(K key) {
+        return ByteBuffer.wrap(codec.encodeKey(key));
+    }
+
+    private <T> ListenableFuture<T> resolved(T value) {
+        hits.incrementAndGet();
+        DeferredFuture<T> future = new DeferredFuture<T>();
+        future.resolve(value);
+        return future;
+    }
+
+    private synchronized Object lookup(ByteBuffer key, Object item) {
+        if (!isUsable()) return MISS;
+
+        Slot slot = cache.get(key);
+        if (slot == null) return MISS;
+        if (slot.expires - System.nanoTime() <= 0) {
+            cache.remove(key);
+            return MISS;
+        }
+
+        if (slot.items.containsKey(item)) return slot.items.get(item);
+        if (item != VALUE && item != HASH && slot.items.containsKey(HASH)) {
+            return ((Map<?, ?>) slot.items.get(HASH)).get(item);
+        }
+        return MISS;
+    }
+
+    private synchronized Load begin(ByteBuffer key) {
+        misses.incrementAndGet();
+        if (!isUsable()) return null;
+
+        Load load = loading.get(key);
+        if (load == null) {
+            load = new Load(key);
+            loading.put(key, load);
+        }
+        load.pending++;
+        return load;
+    }
+
+    private synchronized void store(Load load, Object item, Object value, Long pttl) {
+        if (loading.get(load.key) != load) return;
+
+        Slot slot = cache.get(load.key);
+        if (slot == null) {
+            long expires = ttl;
+            if (pttl != null && pttl >= 0) expires = Math.min(expires, TimeUnit.MILLISECONDS.toNanos(pttl));
+            slot = new Slot(System.nanoTime() + expires);
+            cache.put(load.key, slot);
+        }
+        slot.items.put(item, value);
+    }
+
+    private synchronized void finish(Load load) {
+        if (--load.pending == 0 && loading.get(load.key) == load) loading.remove(load.key);
+    }
+
+    private void invalidate(ByteBuffer key) {
+        cache.remove(key);
+        loading.remove(key);
+    }
+
+    private boolean isUsable() {
+        if (subscribed && !pubsub.isOpen()) {
+            subscribed = false;
+            clear();
+        }
+        return subscribed;
+    }
+
+    private class Listener extends RedisPubSubAdapter<K, V> {
+        @Override
+        public void message(K pattern, K channel, V message) {
+            byte[] bytes = codec.encodeKey(channel);
+            for (int i = PREFIX; i < bytes.length - 2; i++) {
+                if (bytes[i] == '_' && bytes[i + 1] == '_' && bytes[i + 2] == ':') {
+                    ByteBuffer key = ByteBuffer.wrap(Arrays.copyOfRange(bytes, i + 3, bytes.length));
+                    synchronized (RedisNearCache.this) {
+                        invalidate(key);
+                    }
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void psubscribed(K pattern, long count) {
+            synchronized (RedisNearCache.this) {
+                clear();
+                subscribed = true;
+            }
+        }
+    }
+
+    private static class Slot {
+        private long expires;
+        private Map<Object, Object> items;
+
+        Slot(long expires) {
+            this.expires = expires;
+            this.items   = new HashMap<Object, Object>();
+        }
+    }
+
+    private class Load {
+        private ByteBuffer key;
+        private int pending;
+
+        Load(ByteBuffer key) {
+            this.key = key;
+        }
+
+        <T> ListenableFuture<T> fetch(final Object item, ListenableFuture<T> reply, final ListenableFuture<Long> pttl) {
+            final DeferredFuture<T> future = new DeferredFuture<T>();
+            reply.then(new Callback<T>() {
+                @Override
+                public void call(final T value) {
+                    pttl.then(new Callback<Long>() {
+                        @Override
+                        public void call(Long ms) {
+                            store(Load.this, item, value, ms);
+                            finish(Load.this);
+                            future.resolve(value);
+                        }
+                    }, new FailCallback() {
+                        @Override
+                        public void fail(String error) {
+                            finish(Load.this);
+                            future.resolve(value);
+                        }
+                    });
+                }
+            }, new FailCallback() {
+                @Override
+                public void fail(String error) {
+                    future.failure(error);
+                    finish(Load.this);
+                }
+            });
+            return future;
+        }
+    }
+}
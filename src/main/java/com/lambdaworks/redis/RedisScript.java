@@ -0,0 +1,70 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+
+/**
+ * A Lua script registered with a {@link RedisAsyncConnection}. The SHA1 digest
+ * of the script is computed once and the script is always run with EVALSHA,
+ * so the script body is only sent when the server doesn't have it: EVALSHA
+ * replies NOSCRIPT, after a restart or failover, are retried once with EVAL.
+ * Registered scripts are also loaded with SCRIPT LOAD whenever the connection
+ * is re-established.
+ *
+ * @author Will Glozer
+ */
+public class RedisScript<K, V> {
+    private RedisAsyncConnection<K, V> connection;
+    private V script;
+    private ScriptOutputType type;
+    private String digest;
+
+    RedisScript(RedisAsyncConnection<K, V> connection, V script, ScriptOutputType type, String digest) {
+        this.connection = connection;
+        this.script     = script;
+        this.type       = type;
+        this.digest     = digest;
+    }
+
+    public V getScript() {
+        return script;
+    }
+
+    public ScriptOutputType getType() {
+        return type;
+    }
+
+    /**
+     * Get the lowercase hex SHA1 digest of the script.
+     *
+     * @return The digest.
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * Run the script.
+     *
+     * @param keys  Redis keys to pass to the script.
+     *
+     * @return The result of the script.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ListenableFuture<T> eval(K... keys) {
+        return connection.evalsha(this, keys, (V[]) new Object[0]);
+    }
+
+    /**
+     * Run the script.
+     *
+     * @param keys      Redis keys to pass to the script.
+     * @param values    Values to pass to the script.
+     *
+     * @return The result of the script.
+     */
+    public <T> ListenableFuture<T> eval(K[] keys, V... values) {
+        return connection.evalsha(this, keys, values);
+    }
+}
@@ -0,0 +1,166 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+import com.lambdaworks.redis.output.MultiOutput;
+import com.lambdaworks.redis.output.StatusOutput;
+import com.lambdaworks.redis.protocol.Charsets;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandArgs;
+import com.lambdaworks.redis.protocol.CommandOutput;
+import com.lambdaworks.redis.protocol.CommandType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.lambdaworks.redis.protocol.CommandType.*;
+
+/**
+ * A MULTI/EXEC transaction built on a {@link RedisAsyncConnection}. Commands
+ * called on the transaction are collected and return their own futures, which
+ * complete with the result of the command once EXEC returns. {@link #exec}
+ * writes MULTI, the commands and EXEC to the connection as one contiguous
+ * block, so commands of other threads sharing the connection never end up in
+ * the transaction and the transaction takes a single round trip.
+ *
+ * WATCH and UNWATCH are sent to the connection immediately. Since WATCH
+ * applies to the whole connection, transactions that WATCH keys should use a
+ * connection that is not shared, such as one from a {@link RedisConnectionPool}.
+ *
+ * @author Will Glozer
+ */
+public class RedisTransaction<K, V> extends RedisAsyncConnection<K, V> {
+    private RedisAsyncConnection<K, V> connection;
+    private List<Command<K, V, ?>> commands;
+
+    /**
+     * Initialize a new transaction.
+     *
+     * @param connection    Connection the transaction is sent over.
+     * @param codec         Codec used to encode/decode keys and values.
+     * @param timeout       Maximum time to wait for a response.
+     * @param unit          Unit of time for the timeout.
+     */
+    public RedisTransaction(RedisAsyncConnection<K, V> connection, RedisCodec<K, V> codec, long timeout, TimeUnit unit) {
+        super(new LinkedBlockingQueue<Command<K, V, ?>>(), codec, timeout, unit);
+        this.connection = connection;
+        this.commands   = new ArrayList<Command<K, V, ?>>();
+    }
+
+    @Override
+    public synchronized <T> Command<K, V, T> dispatch(CommandType type, CommandOutput<K, V, T> output, CommandArgs<K, V> args) {
+        return dispatch(newCommand(type, output, args));
+    }
+
+    @Override
+    public synchronized <T> Command<K, V, T> dispatch(Command<K, V, T> cmd) {
+        commands.add(cmd);
+        return cmd;
+    }
+
+    @Override
+    protected <T> Command<K, V, T> newCommand(CommandType type, CommandOutput<K, V, T> output, CommandArgs<K, V> args) {
+        return new Command<K, V, T>(type, output, args, true);
+    }
+
+    /**
+     * Get the number of commands collected since the last {@link #exec} or
+     * {@link #discard}.
+     *
+     * @return The number of commands.
+     */
+    public synchronized int size() {
+        return commands.size();
+    }
+
+    /**
+     * Send the collected commands as MULTI, the commands and EXEC. The
+     * transaction may be reused after exec returns. When EXEC fails, as with
+     * EXECABORT after a command was rejected, the returned command and the
+     * futures of all commands of the transaction fail.
+     *
+     * @return The results of the commands, or null if a watched key changed.
+     */
+    @Override
+    public synchronized Command<K, V, List<Object>> exec() {
+        MultiOutput<K, V> output = new MultiOutput<K, V>(codec) {
+            @Override
+            public List<Object> get() {
+                return isAborted() ? null : super.get();
+            }
+        };
+        List<Command<K, V, ?>> block = new ArrayList<Command<K, V, ?>>(commands.size() + 2);
+
+        block.add(new Command<K, V, String>(MULTI, new StatusOutput<K, V>(codec), null, false));
+        for (Command<K, V, ?> cmd : commands) {
+            output.add(cmd);
+            block.add(cmd);
+        }
+        Command<K, V, List<Object>> exec = new Command<K, V, List<Object>>(EXEC, output, null, false);
+        block.add(exec);
+        commands.clear();
+
+        connection.dispatchAll(block);
+        return exec;
+    }
+
+    /**
+     * Drop the collected commands without sending them. Their futures fail.
+     *
+     * @return A future that is already complete.
+     */
+    @Override
+    public synchronized ListenableFuture<String> discard() {
+        for (Command<K, V, ?> cmd : commands) {
+            cmd.abort("Transaction discarded");
+        }
+        commands.clear();
+
+        Command<K, V, String> cmd = new Command<K, V, String>(DISCARD, new StatusOutput<K, V>(codec), null, false);
+        cmd.getOutput().set(Charsets.buffer("OK"));
+        cmd.complete();
+        return cmd;
+    }
+
+    @Override
+    protected boolean isQueued() {
+        return true;
+    }
+
+    @Override
+    public ListenableFuture<String> multi() {
+        throw new RedisException("MULTI is sent by exec");
+    }
+
+    @Override
+    public ListenableFuture<String> watch(K... keys) {
+        return connection.watch(keys);
+    }
+
+    @Override
+    public ListenableFuture<String> unwatch() {
+        return connection.unwatch();
+    }
+
+    @Override
+    public String auth(String password) {
+        throw new RedisException("AUTH is not supported in a transaction");
+    }
+
+    @Override
+    public String select(int db) {
+        throw new RedisException("SELECT is not supported in a transaction");
+    }
+
+    /**
+     * Discard the collected commands.
+     */
+    @Override
+    public void close() {
+        discard();
+    }
+}
@@ -0,0 +1,274 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.DeferredFuture;
+import com.lambdaworks.redis.concurrent.FailCallback;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+import com.lambdaworks.redis.protocol.CommandType;
+
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.lambdaworks.redis.protocol.CommandType.*;
+
+/**
+ * Buffers writes to hot keys for a short window and sends one command per key
+ * in their place. Increments of the same key or hash field are summed into
+ * one INCRBY, HINCRBY, INCRBYFLOAT or HINCRBYFLOAT, and of several SETs of the
+ * same key only the last is sent. The combined commands are pipelined when the
+ * window ends or when maxKeys keys are pending, and the future of every
+ * buffered write completes with the reply to its combined command, so callers
+ * of INCRBY see the counter value after all increments of the window.
+ *
+ * Writes of a different kind to a key with pending writes, such as a SET of a
+ * counter, first flush everything pending so writes to a key are applied in
+ * order. {@link #close} flushes pending writes and waits for their replies, it
+ * must be called before the underlying connection is closed.
+ *
+ * @author Will Glozer
+ */
+public class RedisWriteCombiner<K, V> implements Runnable {
+    private RedisAsyncConnection<K, V> connection;
+    private ScheduledExecutorService scheduler;
+    private int maxKeys;
+    private long window;
+    private Map<List<Object>, Write<?>> writes;
+    private Map<K, CommandType> kinds;
+    private ScheduledFuture<?> scheduled;
+    private boolean closed;
+
+    /**
+     * Create a new write combiner.
+     *
+     * @param connection    Connection the combined commands are sent over.
+     * @param scheduler     Scheduler used to flush when the window ends, such
+     *                      as the client's event loop group.
+     * @param maxKeys       Maximum number of keys with pending writes.
+     * @param window        Maximum time a write is buffered.
+     * @param unit          Unit of time for the window.
+     */
+    public RedisWriteCombiner(RedisAsyncConnection<K, V> connection, ScheduledExecutorService scheduler, int maxKeys,
+                              long window, TimeUnit unit) {
+        this.connection = connection;
+        this.scheduler  = scheduler;
+        this.maxKeys    = maxKeys;
+        this.window     = unit.toNanos(window);
+        this.writes     = new LinkedHashMap<List<Object>, Write<?>>();
+        this.kinds      = new HashMap<K, CommandType>();
+    }
+
+    public ListenableFuture<Long> incrby(K key, long amount) {
+        return increment(INCRBY, key, null, amount);
+    }
+
+    public ListenableFuture<Long> hincrby(K key, K field, long amount) {
+        return increment(HINCRBY, key, field, amount);
+    }
+
+    public ListenableFuture<Double> incrbyfloat(K key, double amount) {
+        return increment(INCRBYFLOAT, key, null, amount);
+    }
+
+    public ListenableFuture<Double> hincrbyfloat(K key, K field, double amount) {
+        return increment(HINCRBYFLOAT, key, field, amount);
+    }
+
+    public synchronized ListenableFuture<String> set(K key, V value) {
+        Setter write = find(SET, key, null);
+        boolean created = write == null;
+        if (created) write = new Setter(key);
+        write.value = value;
+        return write.future(created);
+    }
+
+    /**
+     * Send all pending writes now.
+     */
+    public synchronized void flush() {
+        send();
+    }
+
+    /**
+     * Flush pending writes when the window ends.
+     */
+    @Override
+    public void run() {
+        flush();
+    }
+
+    /**
+     * Flush pending writes and wait for their replies, up to the connection
+     * timeout. Writes made after close fail with a {@link RedisException}.
+     *
+     * @return true if all pending writes completed in time.
+     */
+    public boolean close() {
+        List<Future<?>> sent;
+        synchronized (this) {
+            closed = true;
+            sent = send();
+        }
+        return connection.awaitAll(sent.toArray(new Future<?>[sent.size()]));
+    }
+
+    private synchronized ListenableFuture<Long> increment(CommandType type, K key, K field, long amount) {
+        Counter write = find(type, key, field);
+        boolean created = write == null;
+        if (created) write = new Counter(type, key, field);
+        write.amount += amount;
+        return write.future(created);
+    }
+
+    private synchronized ListenableFuture<Double> increment(CommandType type, K key, K field, double amount) {
+        FloatCounter write = find(type, key, field);
+        boolean created = write == null;
+        if (created) write = new FloatCounter(type, key, field);
+        write.amount += amount;
+        return write.future(created);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <W extends Write<?>> W find(CommandType type, K key, K field) {
+        if (closed) throw new RedisException("Write combiner is closed");
+        CommandType kind = kinds.get(key);
+        if (kind != null && kind != type) send();
+        return (W) writes.get(Arrays.<Object>asList(type, key, field));
+    }
+
+    private void add(Write<?> write) {
+        writes.put(Arrays.<Object>asList(write.type, write.key, write.field), write);
+        kinds.put(write.key, write.type);
+        if (writes.size() >= maxKeys) {
+            send();
+        } else if (scheduled == null) {
+            scheduled = scheduler.schedule(this, window, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<Future<?>> send() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+
+        List<Future<?>> sent = new ArrayList<Future<?>>(writes.size());
+        for (Write<?> write : writes.values()) {
+            try {
+                sent.add(write.send());
+            } catch (RuntimeException e) {
+                write.fail(e);
+            }
+        }
+        writes.clear();
+        kinds.clear();
+
+        return sent;
+    }
+
+    private abstract class Write<T> implements Callback<T>, FailCallback {
+        protected CommandType type;
+        protected K key;
+        protected K field;
+        protected List<DeferredFuture<T>> futures;
+
+        Write(CommandType type, K key, K field) {
+            this.type    = type;
+            this.key     = key;
+            this.field   = field;
+            this.futures = new ArrayList<DeferredFuture<T>>();
+        }
+
+        /**
+         * Create the future of a write combined into this one, once the
+         * write has been applied.
+         *
+         * @param created   true if this write is new and not yet pending.
+         *
+         * @return The future.
+         */
+        DeferredFuture<T> future(boolean created) {
+            DeferredFuture<T> future = new DeferredFuture<T>();
+            futures.add(future);
+            if (created) add(this);
+            return future;
+        }
+
+        ListenableFuture<T> send() {
+            ListenableFuture<T> reply = dispatch();
+            reply.then(this, this);
+            return reply;
+        }
+
+        protected abstract ListenableFuture<T> dispatch();
+
+        @Override
+        public void call(T value) {
+            for (DeferredFuture<T> future : futures) {
+                future.resolve(value);
+            }
+        }
+
+        @Override
+        public void fail(String error) {
+            for (DeferredFuture<T> future : futures) {
+                future.failure(error);
+            }
+        }
+
+        /**
+         * Fail the futures of this write when its command can't be dispatched,
+         * for example when the connection is closed.
+         *
+         * @param cause Cause of the failure.
+         */
+        void fail(Throwable cause) {
+            for (DeferredFuture<T> future : futures) {
+                future.failure(cause);
+            }
+        }
+    }
+
+    private class Counter extends Write<Long> {
+        private long amount;
+
+        Counter(CommandType type, K key, K field) {
+            super(type, key, field);
+        }
+
+        @Override
+        protected ListenableFuture<Long> dispatch() {
+            return field == null ? connection.incrby(key, amount) : connection.hincrby(key, field, amount);
+        }
+    }
+
+    private class FloatCounter extends Write<Double> {
+        private double amount;
+
+        FloatCounter(CommandType type, K key, K field) {
+            super(type, key, field);
+        }
+
+        @Override
+        protected ListenableFuture<Double> dispatch() {
+            return field == null ? connection.incrbyfloat(key, amount) : connection.hincrbyfloat(key, field, amount);
+        }
+    }
+
+    private class Setter extends Write<String> {
+        private V value;
+
+        Setter(K key) {
+            super(SET, key, null);
+        }
+
+        @Override
+        protected ListenableFuture<String> dispatch() {
+            return connection.set(key, value);
+        }
+    }
+}
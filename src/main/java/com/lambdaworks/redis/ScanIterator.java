@@ -0,0 +1,50 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterates over the elements returned by successive calls to SCAN, SSCAN,
+ * HSCAN or ZSCAN, prefetching one page. As with the SCAN commands, elements
+ * may be returned more than once.
+ *
+ * @param <T> Element type.
+ *
+ * @author Will Glozer
+ */
+public abstract class ScanIterator<K, V, T> extends PageIterator<K, V, ScanResult<T>, T> {
+    /**
+     * Initialize a new iterator.
+     *
+     * @param timeout       Maximum time to wait for a page.
+     * @param unit          Unit of time for the timeout.
+     */
+    public ScanIterator(long timeout, TimeUnit unit) {
+        super(timeout, unit);
+    }
+
+    /**
+     * Request the page following a cursor.
+     *
+     * @param cursor    Cursor returned by the previous page, or
+     *                  {@link ScanResult#INITIAL_CURSOR} for the first page.
+     *
+     * @return The page.
+     */
+    protected abstract ListenableFuture<ScanResult<T>> scan(String cursor);
+
+    @Override
+    protected ListenableFuture<ScanResult<T>> request(ScanResult<T> previous) {
+        if (previous == null) return scan(ScanResult.INITIAL_CURSOR);
+        return previous.isFinished() ? null : scan(previous.getCursor());
+    }
+
+    @Override
+    protected List<T> values(ScanResult<T> page) {
+        return page.getValues();
+    }
+}
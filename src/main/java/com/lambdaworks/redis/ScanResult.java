@@ -0,0 +1,53 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a SCAN, SSCAN, HSCAN or ZSCAN iteration.
+ *
+ * @param <T> Element type.
+ *
+ * @author Will Glozer
+ */
+public class ScanResult<T> {
+    /**
+     * Cursor that starts an iteration and is returned when it has finished.
+     */
+    public static final String INITIAL_CURSOR = "0";
+
+    private String cursor;
+    private List<T> values;
+
+    public ScanResult() {
+        this.values = new ArrayList<T>();
+    }
+
+    /**
+     * Get the cursor to pass to the next call.
+     *
+     * @return The next cursor.
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public List<T> getValues() {
+        return values;
+    }
+
+    /**
+     * Check if this is the last page of the iteration.
+     *
+     * @return true if the iteration has finished.
+     */
+    public boolean isFinished() {
+        return INITIAL_CURSOR.equals(cursor);
+    }
+}
@@ -0,0 +1,185 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.protocol.Command;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterates over the members of a sorted set that is partitioned across several
+ * servers, in score order, as if it were a single sorted set. Each server is
+ * queried with ZRANGE or ZRANGEBYSCORE ... WITHSCORES LIMIT in pages, all in
+ * parallel, and the pages are combined with a k-way heap merge. The next page
+ * of a server is requested as soon as its current page arrives, so at most two
+ * pages per server are held in memory regardless of how many members are read.
+ *
+ * @author Will Glozer
+ */
+public class ScoredValueMergeIterator<K, V> implements Iterator<ScoredValue<V>> {
+    private K key;
+    private String min;
+    private String max;
+    private boolean reverse;
+    private int pageSize;
+    private long timeout;
+    private TimeUnit unit;
+    private PriorityQueue<Cursor> heap;
+    private List<Cursor> loading;
+
+    /**
+     * Create an iterator over all members of the sorted set in rank order.
+     *
+     * @param connections   Connections to the servers holding the partitions.
+     * @param key           Key of the sorted set on each server.
+     * @param reverse       true to iterate from the highest score down.
+     * @param pageSize      Number of members requested from a server at a time.
+     * @param timeout       Maximum time to wait for a page.
+     * @param unit          Unit of time for the timeout.
+     */
+    public ScoredValueMergeIterator(Collection<? extends RedisAsyncConnection<K, V>> connections, K key, boolean reverse,
+                                    int pageSize, long timeout, TimeUnit unit) {
+        this(connections, key, null, null, reverse, pageSize, timeout, unit);
+    }
+
+    /**
+     * Create an iterator over the members of the sorted set with scores
+     * between min and max, in score order. The bounds use ZRANGEBYSCORE syntax,
+     * for example "-inf" or "(1.5".
+     *
+     * @param connections   Connections to the servers holding the partitions.
+     * @param key           Key of the sorted set on each server.
+     * @param min           Minimum score.
+     * @param max           Maximum score.
+     * @param reverse       true to iterate from the highest score down.
+     * @param pageSize      Number of members requested from a server at a time.
+     * @param timeout       Maximum time to wait for a page.
+     * @param unit          Unit of time for the timeout.
+     */
+    public ScoredValueMergeIterator(Collection<? extends RedisAsyncConnection<K, V>> connections, K key, String min, String max,
+                                    boolean reverse, int pageSize, long timeout, TimeUnit unit) {
+        this.key      = key;
+        this.min      = min;
+        this.max      = max;
+        this.reverse  = reverse;
+        this.pageSize = pageSize;
+        this.timeout  = timeout;
+        this.unit     = unit;
+        this.heap     = new PriorityQueue<Cursor>(Math.max(1, connections.size()));
+        this.loading  = new ArrayList<Cursor>(connections.size());
+
+        int index = 0;
+        for (RedisAsyncConnection<K, V> connection : connections) {
+            loading.add(new Cursor(connection, index++));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return !heap.isEmpty();
+    }
+
+    @Override
+    public ScoredValue<V> next() {
+        fill();
+        Cursor cursor = heap.poll();
+        if (cursor == null) throw new NoSuchElementException();
+
+        ScoredValue<V> value = cursor.take();
+        if (cursor.hasNext()) {
+            heap.add(cursor);
+        } else if (cursor.more()) {
+            loading.add(cursor);
+        }
+        return value;
+    }
+
+    /**
+     * Read up to n members.
+     *
+     * @param n Maximum number of members to read.
+     *
+     * @return The next n members, or fewer if the iteration ends.
+     */
+    public List<ScoredValue<V>> next(int n) {
+        List<ScoredValue<V>> list = new ArrayList<ScoredValue<V>>(n);
+        while (list.size() < n && hasNext()) {
+            list.add(next());
+        }
+        return list;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void fill() {
+        for (Cursor cursor : loading) {
+            cursor.await();
+            if (cursor.hasNext()) heap.add(cursor);
+        }
+        loading.clear();
+    }
+
+    private class Cursor implements Comparable<Cursor> {
+        private RedisAsyncConnection<K, V> connection;
+        private int index;
+        private long offset;
+        private List<ScoredValue<V>> page;
+        private int position;
+        private Command<K, V, List<ScoredValue<V>>> pending;
+
+        Cursor(RedisAsyncConnection<K, V> connection, int index) {
+            this.connection = connection;
+            this.index      = index;
+            this.page       = Collections.emptyList();
+            request();
+        }
+
+        boolean hasNext() {
+            return position < page.size();
+        }
+
+        boolean more() {
+            return pending != null;
+        }
+
+        ScoredValue<V> take() {
+            ScoredValue<V> value = page.get(position++);
+            if (!hasNext() && pending != null) page = Collections.emptyList();
+            return value;
+        }
+
+        void await() {
+            if (hasNext() || pending == null) return;
+            page     = connection.await(pending, timeout, unit);
+            position = 0;
+            pending  = null;
+            if (page.size() == pageSize) request();
+        }
+
+        @Override
+        public int compareTo(Cursor o) {
+            int cmp = Double.compare(page.get(position).score, o.page.get(o.position).score);
+            if (reverse) cmp = -cmp;
+            return cmp != 0 ? cmp : index - o.index;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void request() {
+            long count = pageSize;
+            if (min == null) {
+                long stop = offset + count - 1;
+                pending = (Command<K, V, List<ScoredValue<V>>>) (reverse ? connection.zrevrangeWithScores(key, offset, stop)
+                                                                          : connection.zrangeWithScores(key, offset, stop));
+            } else {
+                pending = (Command<K, V, List<ScoredValue<V>>>) (reverse ? connection.zrevrangebyscoreWithScores(key, max, min, offset, count)
+                                                                          : connection.zrangebyscoreWithScores(key, min, max, offset, count));
+            }
+            offset += count;
+        }
+    }
+}
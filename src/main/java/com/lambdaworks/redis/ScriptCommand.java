@@ -0,0 +1,57 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandArgs;
+import com.lambdaworks.redis.protocol.CommandOutput;
+
+import static com.lambdaworks.redis.protocol.CommandType.*;
+
+/**
+ * An EVALSHA command that is resent as EVAL, with the same output, when the
+ * server does not have the script cached.
+ *
+ * @author Will Glozer
+ */
+abstract class ScriptCommand<K, V, T> extends Command<K, V, T> {
+    private RedisAsyncConnection<K, V> connection;
+    private boolean retried;
+
+    ScriptCommand(RedisAsyncConnection<K, V> connection, CommandOutput<K, V, T> output, CommandArgs<K, V> args) {
+        super(EVALSHA, output, args, false);
+        this.connection = connection;
+    }
+
+    /**
+     * Create the args of the EVAL command that replaces this command when the
+     * server replies NOSCRIPT.
+     *
+     * @return The script body, keys and args.
+     */
+    protected abstract CommandArgs<K, V> evalArgs();
+
+    /**
+     * Complete the command, unless the server replied NOSCRIPT and the
+     * command has been resent as EVAL.
+     */
+    @Override
+    public void complete() {
+        if (!retried && output != null && output.hasError() && output.getError().startsWith("NOSCRIPT")) {
+            retried = true;
+            output.setError((String) null);
+            connection.dispatch(new Command<K, V, T>(EVAL, output, evalArgs(), false) {
+                @Override
+                public void complete() {
+                    finish();
+                }
+            });
+            return;
+        }
+        super.complete();
+    }
+
+    private void finish() {
+        super.complete();
+    }
+}
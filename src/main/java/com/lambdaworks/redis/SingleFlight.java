@@ -0,0 +1,169 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.FailCallback;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandArgs;
+import com.lambdaworks.redis.protocol.CommandType;
+
+import java.util.*;
+
+import static com.lambdaworks.redis.protocol.CommandType.*;
+
+/**
+ * Combines identical read commands in flight on one connection. A read with
+ * the same type, encoded args and output type as a read that has been sent and
+ * not yet answered is not sent, it completes with the reply to the first read.
+ * Any other command ends all flights, so a read sent after a write on the
+ * connection is never answered with a reply read before the write.
+ *
+ * Reads with random replies such as RANDOMKEY and SRANDMEMBER are always sent.
+ * When a command is cancelled, for instance because its caller timed out,
+ * the reads attached to it are sent again on the connection, unless a write
+ * has been sent since, in which case they fail.
+ *
+ * @author Will Glozer
+ */
+class SingleFlight<K, V> {
+    private static final EnumSet<CommandType> RANDOM = EnumSet.of(RANDOMKEY, SRANDMEMBER);
+
+    private RedisAsyncConnection<K, V> connection;
+    private Map<Key, Flight<?>> flights;
+
+    SingleFlight(RedisAsyncConnection<K, V> connection) {
+        this.connection = connection;
+        this.flights    = new HashMap<Key, Flight<?>>();
+    }
+
+    /**
+     * Attach a command to an identical command in flight, or record it as in
+     * flight when there is none. A command that is not a read ends all flights.
+     *
+     * @param cmd   Command about to be sent.
+     *
+     * @return true if the command was attached and must not be sent.
+     */
+    synchronized <T> boolean join(Command<K, V, T> cmd) {
+        if (!cmd.type.isReadOnly()) {
+            flights.clear();
+            return false;
+        }
+        if (RANDOM.contains(cmd.type) || cmd.getOutput() == null) return false;
+
+        Key key = new Key(cmd);
+        Flight<?> flight = flights.get(key);
+        if (flight != null && !flight.leader.isDone()) {
+            flight.followers.add(cmd);
+            return true;
+        }
+
+        Flight<T> leader = new Flight<T>(key, cmd);
+        flights.put(key, leader);
+        cmd.then(leader, leader);
+        return false;
+    }
+
+    /**
+     * End all flights, so commands sent from now on are not attached to
+     * commands sent before.
+     */
+    synchronized void clear() {
+        flights.clear();
+    }
+
+    /**
+     * Get the number of distinct commands in flight.
+     *
+     * @return The number of commands.
+     */
+    synchronized int size() {
+        return flights.size();
+    }
+
+    private synchronized List<Command<K, V, ?>> land(Flight<?> flight) {
+        if (flights.get(flight.key) == flight) flights.remove(flight.key);
+        return flight.followers;
+    }
+
+    private synchronized boolean current(Flight<?> flight) {
+        return flights.get(flight.key) == flight;
+    }
+
+    private class Flight<T> implements Callback<T>, FailCallback {
+        private Key key;
+        private Command<K, V, T> leader;
+        private List<Command<K, V, ?>> followers;
+
+        Flight(Key key, Command<K, V, T> leader) {
+            this.key       = key;
+            this.leader    = leader;
+            this.followers = new ArrayList<Command<K, V, ?>>();
+        }
+
+        @Override
+        public void call(T value) {
+            done();
+        }
+
+        @Override
+        public void fail(String error) {
+            if (leader.isCancelled()) {
+                resend();
+            } else {
+                done();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void done() {
+            for (Command<K, V, ?> cmd : land(this)) {
+                ((Command<K, V, T>) cmd).complete(leader.getOutput());
+            }
+        }
+
+        private void resend() {
+            boolean current = current(this);
+            for (Command<K, V, ?> cmd : land(this)) {
+                if (cmd.isDone()) continue;
+                if (current) {
+                    try {
+                        connection.dispatch(cmd);
+                    } catch (RedisException e) {
+                        cmd.abort(e.getMessage());
+                    }
+                } else {
+                    cmd.abort("Command cancelled");
+                }
+            }
+        }
+    }
+
+    private static class Key {
+        private CommandType type;
+        private Class<?> output;
+        private byte[] args;
+        private int hash;
+
+        Key(Command<?, ?, ?> cmd) {
+            CommandArgs<?, ?> args = cmd.getArgs();
+            this.type   = cmd.type;
+            this.output = cmd.getOutput().getClass();
+            this.args   = args != null ? args.toBytes() : new byte[0];
+            this.hash   = (type.hashCode() * 31 + output.hashCode()) * 31 + Arrays.hashCode(this.args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return type == k.type && output == k.output && Arrays.equals(args, k.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
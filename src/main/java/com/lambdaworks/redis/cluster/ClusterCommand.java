@@ -0,0 +1,46 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.cluster;
+
+import com.lambdaworks.redis.protocol.*;
+
+/**
+ * A command sent over a {@link RedisClusterConnection} that follows MOVED and
+ * ASK redirects instead of completing with the redirect error.
+ *
+ * @param <T> Command output type.
+ *
+ * @author Will Glozer
+ */
+public class ClusterCommand<K, V, T> extends Command<K, V, T> {
+    static final int MAX_REDIRECTS = 5;
+
+    private RedisClusterConnection<K, V> cluster;
+    private int redirects;
+
+    /**
+     * Create a new cluster command.
+     *
+     * @param cluster   Connection that redirects the command.
+     * @param type      Command type.
+     * @param output    Command output.
+     * @param args      Command args, if any.
+     */
+    public ClusterCommand(RedisClusterConnection<K, V> cluster, CommandType type, CommandOutput<K, V, T> output, CommandArgs<K, V> args) {
+        super(type, output, args, false);
+        this.cluster = cluster;
+    }
+
+    /**
+     * Complete the command, unless the server replied with a redirect that
+     * has been followed.
+     */
+    @Override
+    public void complete() {
+        if (output != null && output.hasError() && redirects < MAX_REDIRECTS) {
+            redirects++;
+            if (cluster.redirect(this, output.getError())) return;
+        }
+        super.complete();
+    }
+}
@@ -0,0 +1,125 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.cluster;
+
+import java.util.*;
+
+/**
+ * A node of a Redis Cluster as reported by CLUSTER NODES.
+ *
+ * @author Will Glozer
+ */
+public class ClusterNode {
+    private String id;
+    private String host;
+    private int port;
+    private Set<String> flags;
+    private BitSet slots;
+
+    /**
+     * Create a new node.
+     *
+     * @param id    Node ID.
+     * @param host  Node hostname.
+     * @param port  Node port.
+     * @param flags Node flags, such as master, slave or fail.
+     * @param slots Slots served by the node.
+     */
+    public ClusterNode(String id, String host, int port, Set<String> flags, BitSet slots) {
+        this.id    = id;
+        this.host  = host;
+        this.port  = port;
+        this.flags = flags;
+        this.slots = slots;
+    }
+
+    /**
+     * Parse the reply to CLUSTER NODES.
+     *
+     * @param nodes Reply to CLUSTER NODES.
+     * @param host  Host the command was sent to, used for the node that does
+     *              not yet know its own address.
+     *
+     * @return The nodes of the cluster.
+     */
+    public static List<ClusterNode> parse(String nodes, String host) {
+        List<ClusterNode> list = new ArrayList<ClusterNode>();
+
+        for (String line : nodes.split("\n")) {
+            String[] fields = line.trim().split(" ");
+            if (fields.length < 8) continue;
+
+            String address = fields[1];
+            int at = address.indexOf('@');
+            if (at >= 0) address = address.substring(0, at);
+            int colon = address.lastIndexOf(':');
+
+            String nodeHost = address.substring(0, colon);
+            int nodePort = Integer.parseInt(address.substring(colon + 1));
+            if (nodeHost.length() == 0) nodeHost = host;
+
+            Set<String> flags = new HashSet<String>(Arrays.asList(fields[2].split(",")));
+
+            BitSet slots = new BitSet(SlotHash.SLOT_COUNT);
+            for (int i = 8; i < fields.length; i++) {
+                String range = fields[i];
+                if (range.startsWith("[")) continue;
+                int dash = range.indexOf('-');
+                if (dash < 0) {
+                    slots.set(Integer.parseInt(range));
+                } else {
+                    int from = Integer.parseInt(range.substring(0, dash));
+                    int to   = Integer.parseInt(range.substring(dash + 1));
+                    slots.set(from, to + 1);
+                }
+            }
+
+            list.add(new ClusterNode(fields[0], nodeHost, nodePort, flags, slots));
+        }
+
+        return list;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public Set<String> getFlags() {
+        return flags;
+    }
+
+    public BitSet getSlots() {
+        return slots;
+    }
+
+    /**
+     * Get the address of the node in host:port form.
+     *
+     * @return The node address.
+     */
+    public String getAddress() {
+        return host + ":" + port;
+    }
+
+    /**
+     * Check if the node is a master that has not failed.
+     *
+     * @return true if the node is a healthy master.
+     */
+    public boolean isMaster() {
+        return flags.contains("master") && !flags.contains("fail");
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + getAddress() + " " + flags;
+    }
+}
@@ -0,0 +1,160 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.cluster;
+
+import com.lambdaworks.redis.ClientResources;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisClient;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+import io.netty.util.TimerTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client for <a href="http://redis.io/topics/cluster-spec">Redis Cluster</a>.
+ * The topology is discovered from a seed node and each {@link RedisClusterConnection}
+ * keeps one connection per master. Connections to nodes are established on
+ * first use and share the threads of the client's {@link ClientResources}.
+ *
+ * @author Will Glozer
+ */
+public class RedisClusterClient {
+    private String host;
+    private int port;
+    private ClientResources resources;
+    private boolean shared;
+    private Map<String, RedisClient> clients;
+    private long timeout;
+    private TimeUnit unit;
+    private long refreshInterval;
+
+    /**
+     * Create a new client that discovers the cluster from the supplied seed node.
+     *
+     * @param host    Seed node hostname.
+     * @param port    Seed node port.
+     */
+    public RedisClusterClient(String host, int port) {
+        this(host, port, new ClientResources(), false);
+    }
+
+    /**
+     * Create a new client that discovers the cluster from the supplied seed
+     * node using threads from the supplied {@link ClientResources}.
+     *
+     * @param host      Seed node hostname.
+     * @param port      Seed node port.
+     * @param resources Shared client resources.
+     */
+    public RedisClusterClient(String host, int port, ClientResources resources) {
+        this(host, port, resources, true);
+    }
+
+    private RedisClusterClient(String host, int port, ClientResources resources, boolean shared) {
+        this.host      = host;
+        this.port      = port;
+        this.resources = resources;
+        this.shared    = shared;
+        this.clients   = new HashMap<String, RedisClient>();
+        setDefaultTimeout(60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Set the default timeout for {@link RedisClusterConnection connections}
+     * created by this client.
+     *
+     * @param timeout   Default connection timeout.
+     * @param unit      Unit of time for the timeout.
+     */
+    public void setDefaultTimeout(long timeout, TimeUnit unit) {
+        this.timeout = timeout;
+        this.unit    = unit;
+    }
+
+    /**
+     * Reload the cluster topology of new connections at the supplied interval,
+     * in addition to reloading it after a MOVED redirect. A zero interval
+     * disables periodic reloads.
+     *
+     * @param interval  Interval between reloads.
+     * @param unit      Unit of time for the interval.
+     */
+    public void setRefreshInterval(long interval, TimeUnit unit) {
+        this.refreshInterval = unit.toMillis(interval);
+    }
+
+    /**
+     * Open a new connection to the cluster that treats keys and values as
+     * UTF-8 strings.
+     *
+     * @return A new connection.
+     */
+    public RedisClusterConnection<String, String> connectCluster() {
+        return connectCluster(new Utf8StringCodec());
+    }
+
+    /**
+     * Open a new connection to the cluster. Use the supplied {@link RedisCodec codec}
+     * to encode/decode keys and values. The topology is loaded from the seed node
+     * before this method returns.
+     *
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A new connection.
+     */
+    public <K, V> RedisClusterConnection<K, V> connectCluster(RedisCodec<K, V> codec) {
+        RedisClusterConnection<K, V> connection = new RedisClusterConnection<K, V>(this, codec, timeout, unit);
+        try {
+            connection.refresh(host + ":" + port);
+        } catch (RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        schedule(connection);
+        return connection;
+    }
+
+    /**
+     * Open a new connection to a single node of the cluster. The connection
+     * is established when its first command is dispatched.
+     *
+     * @param host  Node hostname.
+     * @param port  Node port.
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A new connection.
+     */
+    public synchronized <K, V> RedisAsyncConnection<K, V> connectNode(String host, int port, RedisCodec<K, V> codec) {
+        String address = host + ":" + port;
+        RedisClient client = clients.get(address);
+        if (client == null) {
+            client = new RedisClient(host, port, resources);
+            client.setDefaultTimeout(timeout, unit);
+            client.setLazyConnect(true);
+            clients.put(address, client);
+        }
+        return client.connectAsync(codec);
+    }
+
+    /**
+     * Shutdown this client and close all open connections. The client should be
+     * discarded after calling shutdown. Shared {@link ClientResources} are not
+     * shut down.
+     */
+    public synchronized void shutdown() {
+        for (RedisClient client : clients.values()) {
+            client.shutdown();
+        }
+        clients.clear();
+        if (!shared) resources.shutdown();
+    }
+
+    void schedule(TimerTask task) {
+        if (refreshInterval > 0) {
+            resources.timer().newTimeout(task, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.cluster;
+
+import com.lambdaworks.redis.AbstractRoutingConnection;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisException;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.FailCallback;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+import com.lambdaworks.redis.output.IntegerOutput;
+import com.lambdaworks.redis.output.KeyListOutput;
+import com.lambdaworks.redis.output.StatusOutput;
+import com.lambdaworks.redis.protocol.*;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.lambdaworks.redis.protocol.CommandKeyword.NODES;
+import static com.lambdaworks.redis.protocol.CommandType.*;
+
+/**
+ * An asynchronous connection to a <a href="http://redis.io/topics/cluster-spec">Redis Cluster</a>.
+ * Each command is sent to the master serving the hash slot of its first key
+ * over one {@link RedisAsyncConnection} per node, and commands without keys are
+ * sent to the first master. DBSIZE, FLUSHALL, FLUSHDB and KEYS are sent to
+ * every master and their replies merged, while SCAN is rejected, use
+ * {@link #node} to scan each master. MOVED and ASK redirects are followed and
+ * the slot table is refreshed from CLUSTER NODES in the background.
+ *
+ * Wrap the connection in a {@link com.lambdaworks.redis.RedisConnection} for
+ * synchronous use.
+ *
+ * @author Will Glozer
+ */
+public class RedisClusterConnection<K, V> extends AbstractRoutingConnection<K, V> implements TimerTask {
+    private static final EnumSet<CommandType> KEYSPACE = EnumSet.of(DBSIZE, FLUSHALL, FLUSHDB, KEYS, SCAN);
+
+    private RedisClusterClient client;
+    private ConcurrentMap<String, RedisAsyncConnection<K, V>> nodes;
+    private volatile String[] slots;
+    private volatile String first;
+    private volatile List<String> masters;
+    private AtomicBoolean refreshing;
+    private volatile boolean closed;
+
+    /**
+     * Initialize a new connection.
+     *
+     * @param client  Client that opens connections to cluster nodes.
+     * @param codec   Codec used to encode/decode keys and values.
+     * @param timeout Maximum time to wait for a response.
+     * @param unit    Unit of time for the timeout.
+     */
+    public RedisClusterConnection(RedisClusterClient client, RedisCodec<K, V> codec, long timeout, TimeUnit unit) {
+        super(codec, timeout, unit);
+        this.client     = client;
+        this.nodes      = new ConcurrentHashMap<String, RedisAsyncConnection<K, V>>();
+        this.slots      = new String[SlotHash.SLOT_COUNT];
+        this.masters    = Collections.emptyList();
+        this.refreshing = new AtomicBoolean();
+    }
+
+    /**
+     * Load the cluster topology from the node at the supplied address and wait
+     * for the reply.
+     *
+     * @param address   Node address in host:port form.
+     */
+    public void refresh(String address) {
+        Command<K, V, String> cmd = nodes(address);
+        apply(ClusterNode.parse(await(cmd, timeout, unit), host(address)));
+    }
+
+    /**
+     * Reload the cluster topology in the background. Does nothing if a reload
+     * is already in progress.
+     */
+    public void refreshAsync() {
+        final String address = first;
+        if (closed || address == null || !refreshing.compareAndSet(false, true)) return;
+
+        nodes(address).then(new Callback<String>() {
+            @Override
+            public void call(String reply) {
+                try {
+                    if (reply != null) apply(ClusterNode.parse(reply, host(address)));
+                } finally {
+                    refreshing.set(false);
+                }
+            }
+        }, new FailCallback() {
+            @Override
+            public void fail(String error) {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Get the connection to the node at the supplied address, opening a new
+     * one with the password and database of this connection if necessary.
+     *
+     * @param address   Node address in host:port form.
+     *
+     * @return The node connection.
+     */
+    public RedisAsyncConnection<K, V> node(String address) {
+        RedisAsyncConnection<K, V> connection = nodes.get(address);
+        if (connection == null) {
+            int colon = address.lastIndexOf(':');
+            int port  = Integer.parseInt(address.substring(colon + 1));
+            connection = restore(client.connectNode(host(address), port, codec));
+            RedisAsyncConnection<K, V> existing = nodes.putIfAbsent(address, connection);
+            if (existing != null) {
+                connection.close();
+                connection = existing;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Get the connection to the master serving a hash slot.
+     *
+     * @param slot  Hash slot.
+     *
+     * @return The node connection.
+     */
+    public RedisAsyncConnection<K, V> slot(int slot) {
+        String address = slots[slot];
+        return node(address != null ? address : first);
+    }
+
+    @Override
+    public ListenableFuture<Long> dbsize() {
+        List<String> targets = masters;
+        FanOutCommand<K, V, Long, Long> cmd = new FanOutCommand<K, V, Long, Long>(DBSIZE, new IntegerOutput<K, V>(codec), targets.size()) {
+            private long count;
+
+            @Override
+            protected void merge(int index, Long value) {
+                count += value;
+            }
+
+            @Override
+            protected void finish() {
+                output.set(count);
+            }
+        };
+
+        for (int i = 0; i < targets.size(); i++) {
+            node(targets.get(i)).dispatch(cmd.join(i, newCommand(DBSIZE, new IntegerOutput<K, V>(codec), null)));
+        }
+
+        return cmd;
+    }
+
+    @Override
+    public ListenableFuture<String> flushall() {
+        return flush(FLUSHALL);
+    }
+
+    @Override
+    public ListenableFuture<String> flushdb() {
+        return flush(FLUSHDB);
+    }
+
+    @Override
+    public ListenableFuture<List<K>> keys(K pattern) {
+        List<String> targets = masters;
+        final List<List<K>> parts = new ArrayList<List<K>>(Collections.<List<K>>nCopies(targets.size(), null));
+        FanOutCommand<K, V, List<K>, List<K>> cmd = new FanOutCommand<K, V, List<K>, List<K>>(KEYS, new KeyListOutput<K, V>(codec), targets.size()) {
+            @Override
+            protected void merge(int index, List<K> value) {
+                parts.set(index, value);
+            }
+
+            @Override
+            protected void finish() {
+                for (List<K> part : parts) {
+                    if (part != null) output.get().addAll(part);
+                }
+            }
+        };
+
+        for (int i = 0; i < targets.size(); i++) {
+            CommandArgs<K, V> args = new CommandArgs<K, V>(codec).addKey(pattern);
+            node(targets.get(i)).dispatch(cmd.join(i, newCommand(KEYS, new KeyListOutput<K, V>(codec), args)));
+        }
+
+        return cmd;
+    }
+
+    @Override
+    protected RedisAsyncConnection<K, V> route(Command<K, V, ?> cmd) {
+        if (KEYSPACE.contains(cmd.type)) {
+            throw new RedisException(cmd.type + " is not supported on cluster connections, send it to each node");
+        }
+        CommandArgs<K, V> args = cmd.getArgs();
+        byte[] key = args != null ? args.firstKey() : null;
+        return key != null ? slot(SlotHash.slot(key)) : node(first);
+    }
+
+    @Override
+    protected Object partition(byte[] key) {
+        return SlotHash.slot(key);
+    }
+
+    @Override
+    protected Collection<RedisAsyncConnection<K, V>> connections() {
+        return nodes.values();
+    }
+
+    @Override
+    protected <T> Command<K, V, T> newCommand(CommandType type, CommandOutput<K, V, T> output, CommandArgs<K, V> args) {
+        return new ClusterCommand<K, V, T>(this, type, output, args);
+    }
+
+    /**
+     * Resend a command to the node named in a MOVED or ASK error. A MOVED
+     * error also updates the slot table and triggers a topology refresh.
+     *
+     * @param cmd   Command that failed.
+     * @param error Error returned by the server.
+     *
+     * @return true if the command was resent.
+     */
+    boolean redirect(Command<K, V, ?> cmd, String error) {
+        boolean moved = error.startsWith("MOVED ");
+        boolean ask   = error.startsWith("ASK ");
+        if (closed || !(moved || ask)) return false;
+
+        String[] parts = error.split(" ");
+        if (parts.length < 3) return false;
+
+        int slot = Integer.parseInt(parts[1]);
+        String address = parts[2];
+        RedisAsyncConnection<K, V> node = node(address);
+
+        cmd.getOutput().setError((String) null);
+
+        if (moved) {
+            slots[slot] = address;
+            node.dispatch(cmd);
+            refreshAsync();
+        } else {
+            synchronized (node) {
+                node.asking();
+                node.dispatch(cmd);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Periodic topology refresh.
+     *
+     * @param timeout Timer task handle.
+     */
+    @Override
+    public void run(Timeout timeout) {
+        if (closed) return;
+        refreshAsync();
+        client.schedule(this);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        super.close();
+    }
+
+    private Command<K, V, String> nodes(String address) {
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add(NODES);
+        return node(address).dispatch(CLUSTER, new StatusOutput<K, V>(codec), args);
+    }
+
+    private ListenableFuture<String> flush(CommandType type) {
+        List<String> targets = masters;
+        FanOutCommand<K, V, String, String> cmd = new FanOutCommand<K, V, String, String>(type, new StatusOutput<K, V>(codec), targets.size()) {
+            @Override
+            protected void merge(int index, String value) {
+                // nothing to merge
+            }
+
+            @Override
+            protected void finish() {
+                output.set(Charsets.buffer("OK"));
+            }
+        };
+
+        for (int i = 0; i < targets.size(); i++) {
+            node(targets.get(i)).dispatch(cmd.join(i, newCommand(type, new StatusOutput<K, V>(codec), null)));
+        }
+
+        return cmd;
+    }
+
+    /**
+     * Replace the slot table with the supplied topology. Connections to nodes
+     * that are no longer masters are kept open, so commands in flight on them
+     * complete or are redirected by a MOVED error, and are closed with this
+     * connection.
+     *
+     * @param topology  Cluster nodes.
+     */
+    private void apply(List<ClusterNode> topology) {
+        String[] table = new String[SlotHash.SLOT_COUNT];
+        Set<String> addresses = new LinkedHashSet<String>();
+
+        for (ClusterNode n : topology) {
+            if (!n.isMaster()) continue;
+            String address = n.getAddress();
+            addresses.add(address);
+            node(address);
+
+            BitSet served = n.getSlots();
+            for (int i = served.nextSetBit(0); i >= 0; i = served.nextSetBit(i + 1)) {
+                table[i] = address;
+            }
+        }
+
+        if (addresses.isEmpty()) return;
+
+        slots   = table;
+        first   = addresses.iterator().next();
+        masters = new ArrayList<String>(addresses);
+    }
+
+    private static String host(String address) {
+        return address.substring(0, address.lastIndexOf(':'));
+    }
+}
@@ -0,0 +1,79 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.cluster;
+
+/**
+ * Maps keys to the <a href="http://redis.io/topics/cluster-spec">Redis Cluster</a>
+ * hash slots that own them. Only the part of a key between the first '{' and the
+ * following '}' is hashed when that part is not empty, so related keys can be
+ * placed in the same slot with a {hash-tag}.
+ *
+ * @author Will Glozer
+ */
+public class SlotHash {
+    /**
+     * Number of hash slots in a cluster.
+     */
+    public static final int SLOT_COUNT = 16384;
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            TABLE[i] = crc & 0xffff;
+        }
+    }
+
+    private SlotHash() {
+    }
+
+    /**
+     * Compute the hash slot of an encoded key.
+     *
+     * @param key   Encoded key.
+     *
+     * @return The slot, between 0 and {@link #SLOT_COUNT} - 1.
+     */
+    public static int slot(byte[] key) {
+        int start = 0;
+        int end   = key.length;
+
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] == '{') {
+                for (int j = i + 1; j < key.length; j++) {
+                    if (key[j] == '}') {
+                        if (j > i + 1) {
+                            start = i + 1;
+                            end   = j;
+                        }
+                        break;
+                    }
+                }
+                break;
+            }
+        }
+
+        return crc16(key, start, end) & (SLOT_COUNT - 1);
+    }
+
+    /**
+     * Compute the CRC16 (XMODEM) checksum of a range of bytes.
+     *
+     * @param bytes Bytes to checksum.
+     * @param start Index of the first byte.
+     * @param end   Index after the last byte.
+     *
+     * @return The checksum.
+     */
+    static int crc16(byte[] bytes, int start, int end) {
+        int crc = 0;
+        for (int i = start; i < end; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ bytes[i]) & 0xff]) & 0xffff;
+        }
+        return crc;
+    }
+}
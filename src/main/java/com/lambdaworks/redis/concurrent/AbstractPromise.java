@@ -2,6 +2,7 @@ package com.lambdaworks.redis.concurrent;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -9,7 +10,7 @@ import java.util.concurrent.Executors;
  * Created by roger on 14-4-16.
  */
 public abstract class AbstractPromise<T> implements Promise<T> {
-    private static ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    protected Executor executor;
     protected final List<Callback<T>> doneCallbacks = new CopyOnWriteArrayList<Callback<T>>();
     protected final List<FailCallback> failCallbacks = new CopyOnWriteArrayList<FailCallback>();
     protected T value;
@@ -20,6 +21,26 @@ public abstract class AbstractPromise<T> implements Promise<T> {
         return error != null;
     }
 
+    /**
+     * Run callbacks of this promise on the supplied executor instead of the
+     * default callback thread pool.
+     *
+     * @param executor Callback executor.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Get the executor running callbacks, creating the default callback thread
+     * pool on first use.
+     *
+     * @return Callback executor.
+     */
+    protected Executor executor() {
+        return executor != null ? executor : DefaultExecutor.INSTANCE;
+    }
+
     public boolean isPending() {
         return state == Promise.State.PENDING;
     }
@@ -54,7 +75,7 @@ public abstract class AbstractPromise<T> implements Promise<T> {
     }
 
     protected void triggerDone(final T resolved) {
-        executor.submit(new Runnable() {
+        executor().execute(new Runnable() {
             @Override
             public void run() {
                 for (Callback<T> callback : doneCallbacks) {
@@ -71,7 +92,7 @@ public abstract class AbstractPromise<T> implements Promise<T> {
 
 
     protected void triggerError(final String error) {
-        executor.submit(new Runnable() {
+        executor().execute(new Runnable() {
             @Override
             public void run() {
                 for(FailCallback failCallback : failCallbacks) {
@@ -86,4 +107,8 @@ public abstract class AbstractPromise<T> implements Promise<T> {
     public <R> Promise<R> then(DonePipe<T, R> pipeCallback) {
         return new PipedPromise<>(this, pipeCallback);
     }
+
+    private static class DefaultExecutor {
+        static final ExecutorService INSTANCE = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
 }
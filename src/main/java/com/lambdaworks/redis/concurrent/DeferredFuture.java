@@ -0,0 +1,77 @@
+package com.lambdaworks.redis.concurrent;
+
+import com.lambdaworks.redis.RedisException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link DeferredObject} that may also be waited on as a {@link java.util.concurrent.Future}.
+ *
+ * @param <T> Result type.
+ */
+public class DeferredFuture<T> extends DeferredObject<T> implements ListenableFuture<T> {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private Throwable cause;
+
+    @Override
+    public void resolve(T value) {
+        super.resolve(value);
+        latch.countDown();
+    }
+
+    @Override
+    public void failure(String error) {
+        super.failure(error);
+        latch.countDown();
+    }
+
+    /**
+     * Fail with the supplied cause, which is rethrown wrapped in an
+     * {@link ExecutionException} by {@link #get}.
+     *
+     * @param cause Cause of the failure.
+     */
+    public void failure(Throwable cause) {
+        this.cause = cause;
+        failure(String.valueOf(cause.getMessage()));
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException("Future timed out");
+        }
+        return result();
+    }
+
+    private T result() throws ExecutionException {
+        if (state == Promise.State.FAILURE) {
+            throw new ExecutionException(cause != null ? cause : new RedisException(error));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,27 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.masterslave;
+
+/**
+ * Where a {@link RedisMasterSlaveConnection} sends read-only commands.
+ *
+ * @author Will Glozer
+ */
+public enum ReadPolicy {
+    /**
+     * Send all commands to the master.
+     */
+    MASTER,
+
+    /**
+     * Spread reads across healthy replicas, using the master when no replica
+     * is healthy.
+     */
+    REPLICA_PREFERRED,
+
+    /**
+     * Send reads to the healthy server, master or replica, with the lowest
+     * measured latency.
+     */
+    NEAREST
+}
@@ -0,0 +1,206 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.masterslave;
+
+import com.lambdaworks.redis.ClientResources;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisClient;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+import io.netty.util.TimerTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client for a redis master and its replicas. The topology is either
+ * discovered with INFO replication from any of the servers, or configured
+ * statically with {@link #addReplica}. Connections to servers share the threads
+ * of the client's {@link ClientResources}.
+ *
+ * @author Will Glozer
+ */
+public class RedisMasterSlaveClient {
+    private String host;
+    private int port;
+    private ClientResources resources;
+    private boolean shared;
+    private Map<String, RedisClient> clients;
+    private List<String> replicas;
+    private ReadPolicy policy;
+    private long maxLag;
+    private long timeout;
+    private TimeUnit unit;
+    private long refreshInterval;
+
+    /**
+     * Create a new client that discovers the topology from the supplied server,
+     * which may be the master or a replica.
+     *
+     * @param host    Server hostname.
+     * @param port    Server port.
+     */
+    public RedisMasterSlaveClient(String host, int port) {
+        this(host, port, new ClientResources(), false);
+    }
+
+    /**
+     * Create a new client that discovers the topology from the supplied server
+     * using threads from the supplied {@link ClientResources}.
+     *
+     * @param host      Server hostname.
+     * @param port      Server port.
+     * @param resources Shared client resources.
+     */
+    public RedisMasterSlaveClient(String host, int port, ClientResources resources) {
+        this(host, port, resources, true);
+    }
+
+    private RedisMasterSlaveClient(String host, int port, ClientResources resources, boolean shared) {
+        this.host      = host;
+        this.port      = port;
+        this.resources = resources;
+        this.shared    = shared;
+        this.clients   = new HashMap<String, RedisClient>();
+        this.policy    = ReadPolicy.REPLICA_PREFERRED;
+        setDefaultTimeout(60, TimeUnit.SECONDS);
+        setRefreshInterval(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Set the default timeout for connections created by this client.
+     *
+     * @param timeout   Default connection timeout.
+     * @param unit      Unit of time for the timeout.
+     */
+    public void setDefaultTimeout(long timeout, TimeUnit unit) {
+        this.timeout = timeout;
+        this.unit    = unit;
+    }
+
+    /**
+     * Use a static topology. The server this client was created with is the
+     * master and replicas are added with this method instead of being
+     * discovered.
+     *
+     * @param host  Replica hostname.
+     * @param port  Replica port.
+     */
+    public void addReplica(String host, int port) {
+        if (replicas == null) replicas = new ArrayList<String>();
+        replicas.add(host + ":" + port);
+    }
+
+    /**
+     * Set where new connections send read-only commands, by default
+     * {@link ReadPolicy#REPLICA_PREFERRED}.
+     *
+     * @param policy    Read policy.
+     */
+    public void setReadPolicy(ReadPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Stop sending reads to replicas that have not heard from the master for
+     * longer than the supplied time. A zero lag disables the check. Replicas
+     * report the time since they heard from the master in whole seconds, so
+     * a lag below 1 second only admits replicas that report 0.
+     *
+     * @param lag   Maximum replication lag.
+     * @param unit  Unit of time for the lag.
+     */
+    public void setMaxLag(long lag, TimeUnit unit) {
+        this.maxLag = unit.toMillis(lag);
+    }
+
+    /**
+     * Set the interval between health and latency checks of the servers, by
+     * default 1 second. A zero interval disables the checks.
+     *
+     * @param interval  Interval between checks.
+     * @param unit      Unit of time for the interval.
+     */
+    public void setRefreshInterval(long interval, TimeUnit unit) {
+        this.refreshInterval = unit.toMillis(interval);
+    }
+
+    /**
+     * Open a new connection to the master and replicas that treats keys and
+     * values as UTF-8 strings.
+     *
+     * @return A new connection.
+     */
+    public RedisMasterSlaveConnection<String, String> connectMasterSlave() {
+        return connectMasterSlave(new Utf8StringCodec());
+    }
+
+    /**
+     * Open a new connection to the master and replicas. Use the supplied
+     * {@link RedisCodec codec} to encode/decode keys and values.
+     *
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A new connection.
+     */
+    public <K, V> RedisMasterSlaveConnection<K, V> connectMasterSlave(RedisCodec<K, V> codec) {
+        RedisMasterSlaveConnection<K, V> connection = new RedisMasterSlaveConnection<K, V>(this, codec, timeout, unit, policy, maxLag);
+        try {
+            if (replicas == null) {
+                connection.discover(host + ":" + port);
+            } else {
+                connection.setTopology(host + ":" + port, replicas);
+            }
+        } catch (RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        connection.refreshAsync();
+        schedule(connection);
+        return connection;
+    }
+
+    /**
+     * Open a new connection to a single server. The connection is established
+     * when its first command is dispatched.
+     *
+     * @param host  Server hostname.
+     * @param port  Server port.
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A new connection.
+     */
+    public synchronized <K, V> RedisAsyncConnection<K, V> connectNode(String host, int port, RedisCodec<K, V> codec) {
+        String address = host + ":" + port;
+        RedisClient client = clients.get(address);
+        if (client == null) {
+            client = new RedisClient(host, port, resources);
+            client.setDefaultTimeout(timeout, unit);
+            client.setLazyConnect(true);
+            clients.put(address, client);
+        }
+        return client.connectAsync(codec);
+    }
+
+    /**
+     * Shutdown this client and close all open connections. The client should be
+     * discarded after calling shutdown. Shared {@link ClientResources} are not
+     * shut down.
+     */
+    public synchronized void shutdown() {
+        for (RedisClient client : clients.values()) {
+            client.shutdown();
+        }
+        clients.clear();
+        if (!shared) resources.shutdown();
+    }
+
+    void schedule(TimerTask task) {
+        if (refreshInterval > 0) {
+            resources.timer().newTimeout(task, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.masterslave;
+
+import com.lambdaworks.redis.AbstractRoutingConnection;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.FailCallback;
+import com.lambdaworks.redis.output.StatusOutput;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandArgs;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.lambdaworks.redis.protocol.CommandType.INFO;
+
+/**
+ * An asynchronous connection to a master and its replicas. Writes and other
+ * commands that are not {@link com.lambdaworks.redis.protocol.CommandType#isReadOnly read-only}
+ * are sent to the master, reads are sent according to the {@link ReadPolicy}.
+ *
+ * Each server is checked in the background with INFO replication, which also
+ * measures its latency. Replicas whose link to the master is down, or that
+ * have not heard from the master for longer than the maximum lag, do not
+ * receive reads until they recover.
+ *
+ * @author Will Glozer
+ */
+public class RedisMasterSlaveConnection<K, V> extends AbstractRoutingConnection<K, V> implements TimerTask {
+    private RedisMasterSlaveClient client;
+    private ReadPolicy policy;
+    private long maxLag;
+    private boolean discover;
+    private Map<String, Node<K, V>> nodes;
+    private volatile Node<K, V> master;
+    private volatile List<Node<K, V>> replicas;
+    private AtomicInteger next;
+    private volatile boolean closed;
+
+    /**
+     * Initialize a new connection.
+     *
+     * @param client    Client that opens connections to servers.
+     * @param codec     Codec used to encode/decode keys and values.
+     * @param timeout   Maximum time to wait for a response.
+     * @param unit      Unit of time for the timeout.
+     * @param policy    Where to send reads.
+     * @param maxLag    Milliseconds without contact with the master after which a
+     *                  replica no longer receives reads, or 0 for no limit.
+     */
+    public RedisMasterSlaveConnection(RedisMasterSlaveClient client, RedisCodec<K, V> codec, long timeout, TimeUnit unit,
+                                      ReadPolicy policy, long maxLag) {
+        super(codec, timeout, unit);
+        this.client   = client;
+        this.policy   = policy;
+        this.maxLag   = maxLag;
+        this.nodes    = new HashMap<String, Node<K, V>>();
+        this.replicas = Collections.emptyList();
+        this.next     = new AtomicInteger();
+    }
+
+    /**
+     * Discover the master and its replicas from the server at the supplied
+     * address, which may be the master or a replica, and keep rediscovering
+     * the master and its replicas in the background.
+     *
+     * @param address   Server address in host:port form.
+     */
+    public void discover(String address) {
+        ReplicationInfo info = new ReplicationInfo(await(info(node(address)), timeout, unit));
+        if (!info.isMaster()) {
+            address = info.getMaster();
+            info = new ReplicationInfo(await(info(node(address)), timeout, unit));
+        }
+        discover = true;
+        setTopology(address, info.getReplicas());
+    }
+
+    /**
+     * Set the master and replicas, opening connections to new servers and
+     * closing connections to servers that are no longer part of the topology.
+     *
+     * @param master    Master address in host:port form.
+     * @param replicas  Replica addresses in host:port form.
+     */
+    public synchronized void setTopology(String master, List<String> replicas) {
+        Map<String, Node<K, V>> nodes = new HashMap<String, Node<K, V>>();
+        List<Node<K, V>> list = new ArrayList<Node<K, V>>(replicas.size());
+
+        nodes.put(master, node(master));
+        for (String address : replicas) {
+            if (address.equals(master)) continue;
+            Node<K, V> node = node(address);
+            nodes.put(address, node);
+            list.add(node);
+        }
+
+        this.master   = nodes.get(master);
+        this.replicas = Collections.unmodifiableList(list);
+
+        for (Map.Entry<String, Node<K, V>> entry : this.nodes.entrySet()) {
+            if (!nodes.containsKey(entry.getKey())) {
+                entry.getValue().connection.close();
+            }
+        }
+        this.nodes = nodes;
+    }
+
+    /**
+     * Get the connection to the master.
+     *
+     * @return The master connection.
+     */
+    public RedisAsyncConnection<K, V> master() {
+        return master.connection;
+    }
+
+    /**
+     * Check the health and latency of every server and, when the topology
+     * was discovered, rediscover the replicas of the master. A master that
+     * was demoted to a replica leads to the new master it replicates from,
+     * and when the master cannot be reached the replicas are asked for the
+     * master they replicate from, or whether one of them was promoted.
+     */
+    public void refreshAsync() {
+        if (closed) return;
+
+        final Node<K, V> master = this.master;
+        final List<Node<K, V>> replicas = this.replicas;
+        check(master);
+        for (Node<K, V> replica : replicas) {
+            check(replica);
+        }
+
+        if (discover) {
+            info(master).then(new Callback<String>() {
+                @Override
+                public void call(String reply) {
+                    if (reply == null || closed) return;
+                    ReplicationInfo info = new ReplicationInfo(reply);
+                    if (info.isMaster()) {
+                        setTopology(master, master.address, info.getReplicas());
+                    } else if (info.getMaster() != null) {
+                        rediscover(master, info.getMaster());
+                    }
+                }
+            }, new FailCallback() {
+                @Override
+                public void fail(String error) {
+                    for (Node<K, V> replica : replicas) {
+                        failover(master, replica);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Periodic refresh.
+     *
+     * @param timeout Timer task handle.
+     */
+    @Override
+    public void run(Timeout timeout) {
+        if (closed) return;
+        refreshAsync();
+        client.schedule(this);
+    }
+
+    /**
+     * Send the commands of a transaction to the master.
+     *
+     * @param cmds  Commands to send, in order.
+     */
+    @Override
+    public void dispatchAll(List<? extends Command<K, V, ?>> cmds) {
+        master.connection.dispatchAll(cmds);
+    }
+
+    @Override
+    protected RedisAsyncConnection<K, V> route(Command<K, V, ?> cmd) {
+        Node<K, V> master = this.master;
+        if (policy == ReadPolicy.MASTER || !cmd.type.isReadOnly()) return master.connection;
+
+        List<Node<K, V>> replicas = this.replicas;
+        Node<K, V> chosen = null;
+
+        if (policy == ReadPolicy.NEAREST) {
+            chosen = master;
+            for (Node<K, V> replica : replicas) {
+                if (replica.healthy && replica.latency < chosen.latency) chosen = replica;
+            }
+        } else {
+            int size = replicas.size();
+            int start = size > 0 ? (next.getAndIncrement() & Integer.MAX_VALUE) % size : 0;
+            for (int i = 0; i < size && chosen == null; i++) {
+                Node<K, V> replica = replicas.get((start + i) % size);
+                if (replica.healthy) chosen = replica;
+            }
+            if (chosen == null) chosen = master;
+        }
+
+        return chosen.connection;
+    }
+
+    @Override
+    protected Object partition(byte[] key) {
+        return this;
+    }
+
+    @Override
+    protected synchronized Collection<RedisAsyncConnection<K, V>> connections() {
+        List<RedisAsyncConnection<K, V>> list = new ArrayList<RedisAsyncConnection<K, V>>(nodes.size());
+        for (Node<K, V> node : nodes.values()) {
+            list.add(node.connection);
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        super.close();
+    }
+
+    /**
+     * Check whether a replica may receive reads.
+     *
+     * @param info      Replication section of the replica's INFO.
+     * @param maxLag    Milliseconds without contact with the master after
+     *                  which the replica no longer receives reads, or 0.
+     *
+     * @return true if the replica's link to the master is up and not lagging.
+     */
+    static boolean isHealthy(ReplicationInfo info, long maxLag) {
+        long io = TimeUnit.SECONDS.toMillis(info.getLastIoSeconds());
+        return info.isLinkUp() && (maxLag <= 0 || io <= maxLag);
+    }
+
+    private void check(final Node<K, V> node) {
+        if (node.pending != null && !node.pending.isDone()) {
+            node.healthy = false;
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final boolean replica = node != master;
+        node.pending = info(node);
+        node.pending.then(new Callback<String>() {
+            @Override
+            public void call(String reply) {
+                long rtt = System.nanoTime() - start;
+                node.latency = node.latency == Long.MAX_VALUE ? rtt : (node.latency * 7 + rtt) / 8;
+                if (replica && reply != null) {
+                    node.healthy = isHealthy(new ReplicationInfo(reply), maxLag);
+                } else {
+                    node.healthy = true;
+                }
+            }
+        }, new FailCallback() {
+            @Override
+            public void fail(String error) {
+                node.healthy = false;
+            }
+        });
+    }
+
+    /**
+     * Replace the topology unless the master changed since it was read.
+     */
+    private synchronized void setTopology(Node<K, V> expected, String master, List<String> replicas) {
+        if (this.master == expected && !closed) setTopology(master, replicas);
+    }
+
+    private void rediscover(final Node<K, V> expected, final String address) {
+        info(node(address)).then(new Callback<String>() {
+            @Override
+            public void call(String reply) {
+                if (reply == null || closed) return;
+                ReplicationInfo info = new ReplicationInfo(reply);
+                if (info.isMaster()) setTopology(expected, address, info.getReplicas());
+            }
+        });
+    }
+
+    private void failover(final Node<K, V> expected, final Node<K, V> replica) {
+        info(replica).then(new Callback<String>() {
+            @Override
+            public void call(String reply) {
+                if (reply == null || closed) return;
+                ReplicationInfo info = new ReplicationInfo(reply);
+                if (info.isMaster()) {
+                    setTopology(expected, replica.address, info.getReplicas());
+                } else if (info.getMaster() != null && !info.getMaster().equals(expected.address)) {
+                    rediscover(expected, info.getMaster());
+                }
+            }
+        });
+    }
+
+    private Command<K, V, String> info(Node<K, V> node) {
+        CommandArgs<K, V> args = new CommandArgs<K, V>(codec).add("replication");
+        return node.connection.dispatch(INFO, new StatusOutput<K, V>(codec), args);
+    }
+
+    private synchronized Node<K, V> node(String address) {
+        Node<K, V> node = nodes.get(address);
+        if (node == null) {
+            int colon = address.lastIndexOf(':');
+            String host = address.substring(0, colon);
+            int port = Integer.parseInt(address.substring(colon + 1));
+            node = new Node<K, V>(address, restore(client.connectNode(host, port, codec)));
+            nodes.put(address, node);
+        }
+        return node;
+    }
+
+    private static class Node<K, V> {
+        final String address;
+        final RedisAsyncConnection<K, V> connection;
+        volatile long latency = Long.MAX_VALUE;
+        volatile boolean healthy = true;
+        volatile Command<K, V, String> pending;
+
+        Node(String address, RedisAsyncConnection<K, V> connection) {
+            this.address    = address;
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.masterslave;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The replication section of the reply to INFO.
+ *
+ * @author Will Glozer
+ */
+public class ReplicationInfo {
+    private Map<String, String> fields;
+    private List<String> replicas;
+
+    /**
+     * Parse the reply to INFO or INFO replication.
+     *
+     * @param info  Reply to INFO.
+     */
+    public ReplicationInfo(String info) {
+        fields   = new HashMap<String, String>();
+        replicas = new ArrayList<String>();
+
+        for (String line : info.split("\r?\n")) {
+            int colon = line.indexOf(':');
+            if (line.startsWith("#") || colon < 0) continue;
+
+            String name  = line.substring(0, colon);
+            String value = line.substring(colon + 1);
+            fields.put(name, value);
+
+            if (name.matches("slave\\d+")) {
+                String replica = replica(value);
+                if (replica != null) replicas.add(replica);
+            }
+        }
+    }
+
+    /**
+     * Check if the server is a master.
+     *
+     * @return true if the role is master.
+     */
+    public boolean isMaster() {
+        return "master".equals(fields.get("role"));
+    }
+
+    /**
+     * Get the address of the master a replica replicates from.
+     *
+     * @return The master's address in host:port form, or null.
+     */
+    public String getMaster() {
+        String host = fields.get("master_host");
+        String port = fields.get("master_port");
+        return host != null && port != null ? host + ":" + port : null;
+    }
+
+    /**
+     * Get the addresses of the online replicas of a master.
+     *
+     * @return Replica addresses in host:port form.
+     */
+    public List<String> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Check if a replica's link to its master is up.
+     *
+     * @return true if the link is up.
+     */
+    public boolean isLinkUp() {
+        return "up".equals(fields.get("master_link_status"));
+    }
+
+    /**
+     * Get the number of seconds since a replica last heard from its master.
+     *
+     * @return Seconds since the last interaction, or -1 if unknown.
+     */
+    public long getLastIoSeconds() {
+        String value = fields.get("master_last_io_seconds_ago");
+        return value != null ? Long.parseLong(value.trim()) : -1;
+    }
+
+    private static String replica(String value) {
+        String ip = null, port = null, state = null;
+        if (value.contains("=")) {
+            for (String field : value.split(",")) {
+                int eq = field.indexOf('=');
+                if (eq < 0) continue;
+                String name = field.substring(0, eq);
+                if ("ip".equals(name))    ip    = field.substring(eq + 1);
+                if ("port".equals(name))  port  = field.substring(eq + 1);
+                if ("state".equals(name)) state = field.substring(eq + 1);
+            }
+        } else {
+            String[] parts = value.split(",");
+            if (parts.length >= 3) {
+                ip    = parts[0];
+                port  = parts[1];
+                state = parts[2];
+            }
+        }
+        return ip != null && port != null && "online".equals(state) ? ip + ":" + port : null;
+    }
+}
@@ -0,0 +1,23 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.output;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Page of keys returned by SCAN.
+ *
+ * @author Will Glozer
+ */
+public class KeyScanOutput<K, V> extends ScanOutput<K, V, K> {
+    public KeyScanOutput(RedisCodec<K, V> codec) {
+        super(codec);
+    }
+
+    @Override
+    protected void add(ByteBuffer bytes) {
+        output.getValues().add(codec.decodeKey(bytes));
+    }
+}
@@ -0,0 +1,31 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.output;
+
+import com.lambdaworks.redis.KeyValue;
+import com.lambdaworks.redis.codec.RedisCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Page of hash fields and values returned by HSCAN.
+ *
+ * @author Will Glozer
+ */
+public class KeyValueScanOutput<K, V> extends ScanOutput<K, V, KeyValue<K, V>> {
+    private K field;
+
+    public KeyValueScanOutput(RedisCodec<K, V> codec) {
+        super(codec);
+    }
+
+    @Override
+    protected void add(ByteBuffer bytes) {
+        if (field == null) {
+            field = codec.decodeKey(bytes);
+            return;
+        }
+        output.getValues().add(new KeyValue<K, V>(field, codec.decodeValue(bytes)));
+        field = null;
+    }
+}
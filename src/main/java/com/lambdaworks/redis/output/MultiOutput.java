@@ -11,12 +11,16 @@ import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
- * Output of all commands within a MULTI block.
+ * Output of all commands within a MULTI block. An error reply to EXEC itself,
+ * such as EXECABORT, is the error of this output and fails every command of
+ * the block.
  *
  * @author Will Glozer
  */
 public class MultiOutput<K, V> extends CommandOutput<K, V, List<Object>> {
     private Queue<Command<K, V, ?>> queue;
+    private String pending;
+    private boolean aborted;
 
     public MultiOutput(RedisCodec<K, V> codec) {
         super(codec, new ArrayList<Object>());
@@ -43,10 +47,19 @@ public class MultiOutput<K, V> extends CommandOutput<K, V, List<Object>> {
         queue.peek().getOutput().set(bytes);
     }
 
+    /**
+     * Check if EXEC was aborted without an error because a watched key
+     * changed. The commands of the block then complete with null.
+     *
+     * @return true if the transaction was aborted.
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
     @Override
     public void setError(ByteBuffer error) {
-        CommandOutput<K, V, ?> output = queue.isEmpty() ? this : queue.peek().getOutput();
-        output.setError(decodeAscii(error));
+        pending = decodeAscii(error);
     }
 
     @Override
@@ -54,9 +67,20 @@ public class MultiOutput<K, V> extends CommandOutput<K, V, List<Object>> {
         if (depth == 1) {
             Command<K, V, ?> cmd = queue.remove();
             CommandOutput<K, V, ?> o = cmd.getOutput();
+            if (pending != null) {
+                o.setError(pending);
+                pending = null;
+            }
             output.add(!o.hasError() ? o.get() : new RedisException(o.getError()));
             cmd.complete();
+        } else if (depth == 0 && pending != null) {
+            setError(pending);
+            for (Command<K, V, ?> cmd : queue) {
+                cmd.abort(pending);
+            }
+            queue.clear();
         } else if (depth == 0 && !queue.isEmpty()) {
+            aborted = true;
             for (Command<K, V, ?> cmd : queue) {
                 cmd.complete();
             }
@@ -0,0 +1,39 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.output;
+
+import com.lambdaworks.redis.ScanResult;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.protocol.CommandOutput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Output of the SCAN family of commands: the next cursor followed by a page
+ * of elements.
+ *
+ * @param <T> Element type.
+ *
+ * @author Will Glozer
+ */
+public abstract class ScanOutput<K, V, T> extends CommandOutput<K, V, ScanResult<T>> {
+    public ScanOutput(RedisCodec<K, V> codec) {
+        super(codec, new ScanResult<T>());
+    }
+
+    @Override
+    public void set(ByteBuffer bytes) {
+        if (output.getCursor() == null) {
+            output.setCursor(decodeAscii(bytes));
+        } else {
+            add(bytes);
+        }
+    }
+
+    /**
+     * Add the next part of an element of the page.
+     *
+     * @param bytes Element bytes.
+     */
+    protected abstract void add(ByteBuffer bytes);
+}
@@ -0,0 +1,32 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.output;
+
+import com.lambdaworks.redis.ScoredValue;
+import com.lambdaworks.redis.codec.RedisCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Page of sorted set members and their scores returned by ZSCAN.
+ *
+ * @author Will Glozer
+ */
+public class ScoredValueScanOutput<K, V> extends ScanOutput<K, V, ScoredValue<V>> {
+    private V value;
+
+    public ScoredValueScanOutput(RedisCodec<K, V> codec) {
+        super(codec);
+    }
+
+    @Override
+    protected void add(ByteBuffer bytes) {
+        if (value == null) {
+            value = codec.decodeValue(bytes);
+            return;
+        }
+        double score = Double.parseDouble(decodeAscii(bytes));
+        output.getValues().add(new ScoredValue<V>(score, value));
+        value = null;
+    }
+}
@@ -0,0 +1,23 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.output;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Page of set members returned by SSCAN.
+ *
+ * @author Will Glozer
+ */
+public class ValueScanOutput<K, V> extends ScanOutput<K, V, V> {
+    public ValueScanOutput(RedisCodec<K, V> codec) {
+        super(codec);
+    }
+
+    @Override
+    protected void add(ByteBuffer bytes) {
+        output.getValues().add(codec.decodeValue(bytes));
+    }
+}
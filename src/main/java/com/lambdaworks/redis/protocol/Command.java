@@ -5,8 +5,10 @@ package com.lambdaworks.redis.protocol;
 import com.lambdaworks.redis.RedisCommandInterruptedException;
 import com.lambdaworks.redis.concurrent.*;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.*;
 import java.util.concurrent.*;
 
 /**
@@ -24,6 +26,8 @@ public class Command<K, V, T> extends DeferredObject<T> implements ListenableFut
     protected CommandArgs<K, V> args;
     protected CommandOutput<K, V, T> output;
     protected CountDownLatch latch;
+    protected CommandSpool spool;
+    protected ByteBuffer spooled;
 
     /**
      * Create a new command with the supplied type and args.
@@ -41,8 +45,9 @@ public class Command<K, V, T> extends DeferredObject<T> implements ListenableFut
     }
 
     /**
-     * Cancel the command and notify any waiting consumers. This does
-     * not cause the redis server to stop executing the command.
+     * Cancel the command, notify any waiting consumers and fail its callbacks.
+     * This does not cause the redis server to stop executing the command, a
+     * late reply is discarded.
      *
      * @param ignored Ignored parameter.
      *
@@ -55,6 +60,7 @@ public class Command<K, V, T> extends DeferredObject<T> implements ListenableFut
             latch.countDown();
             output = null;
             cancelled = true;
+            failure("Command cancelled");
         }
         return cancelled;
     }
@@ -135,6 +141,15 @@ public class Command<K, V, T> extends DeferredObject<T> implements ListenableFut
         }
     }
 
+    /**
+     * Get the args of this command.
+     *
+     * @return The command args, or null if the command has none or was spooled.
+     */
+    public CommandArgs<K, V> getArgs() {
+        return args;
+    }
+
     /**
      * Get the object that holds this command's output.
      *
@@ -145,21 +160,71 @@ public class Command<K, V, T> extends DeferredObject<T> implements ListenableFut
     }
 
     /**
-     * Mark this command complete and notify all waiting threads.
+     * Mark this command complete and notify all waiting threads. A command
+     * within a MULTI block is complete once EXEC has returned its result, the
+     * QUEUED reply only counts down its latch.
      */
     public void complete() {
+        unspool();
         latch.countDown();
+        if (latch.getCount() > 0) return;
         if(output != null) {
             if(output.hasError()) {
-                failure(error);
+                failure(output.getError());
             } else {
                 resolve(output.get());
             }
-        } else {
+        } else if (isPending()) {
             failure("no result return");
         }
+    }
 
+    /**
+     * Fail this command without waiting for the replies it still expects, as
+     * when its transaction is discarded or aborted. An error already set on
+     * the output, such as the error of a command rejected when queued, is kept.
+     * Nothing happens if this command is already done.
+     *
+     * @param error Error message.
+     */
+    public void abort(String error) {
+        if (isDone()) return;
+        if (output != null && !output.hasError()) output.setError(error);
+        while (latch.getCount() > 1) {
+            latch.countDown();
+        }
+        complete();
+    }
 
+    /**
+     * Complete this command with the output of an identical command that was
+     * sent in its place. List, set and map results are copied so callers may
+     * modify their result. Nothing happens if this command is already done,
+     * and it fails when the other command was cancelled and has no output.
+     *
+     * @param output    Output of the command sent in place of this one.
+     */
+    @SuppressWarnings("unchecked")
+    public void complete(CommandOutput<K, V, T> output) {
+        if (isDone()) return;
+        if (output == null) {
+            abort("Command cancelled");
+            return;
+        }
+        if (output.hasError()) {
+            this.output.setError(output.getError());
+        } else {
+            Object value = output.get();
+            if (value instanceof List) {
+                value = new ArrayList<Object>((List<?>) value);
+            } else if (value instanceof Set) {
+                value = new LinkedHashSet<Object>((Set<?>) value);
+            } else if (value instanceof Map) {
+                value = new LinkedHashMap<Object, Object>((Map<?, ?>) value);
+            }
+            this.output.output = (T) value;
+        }
+        complete();
     }
 
     /**
@@ -169,6 +234,11 @@ public class Command<K, V, T> extends DeferredObject<T> implements ListenableFut
      * @param buf Buffer to write to.
      */
     void encode(ByteBuf buf) {
+        if (spooled != null) {
+            buf.writeBytes(spooled.duplicate());
+            return;
+        }
+
         buf.writeByte('*');
         writeInt(buf, 1 + (args != null ? args.count() : 0));
         buf.writeBytes(CRLF);
@@ -182,6 +252,35 @@ public class Command<K, V, T> extends DeferredObject<T> implements ListenableFut
         }
     }
 
+    /**
+     * Move the encoded form of this command to the supplied spool and drop
+     * the reference to its args.
+     *
+     * @param spool Spool to write to.
+     *
+     * @return true if the command was spooled, false if the spool is full.
+     */
+    public boolean spool(CommandSpool spool) {
+        ByteBuf buf = Unpooled.buffer();
+        encode(buf);
+        ByteBuffer view = spool.append(buf);
+        if (view == null) return false;
+        this.spool   = spool;
+        this.spooled = view;
+        this.args    = null;
+        return true;
+    }
+
+    /**
+     * Release any spool space held by this command without completing it.
+     */
+    public void unspool() {
+        if (spooled != null) {
+            spooled = null;
+            spool.release();
+        }
+    }
+
     /**
      * Write the textual value of a positive integer to the supplied buffer.
      *
@@ -6,6 +6,9 @@ import com.lambdaworks.redis.codec.RedisCodec;
 
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import static java.lang.Math.max;
@@ -21,6 +24,7 @@ public class CommandArgs<K, V> {
     private RedisCodec<K, V> codec;
     private ByteBuffer buffer;
     private int count;
+    private List<byte[]> keys;
 
     public CommandArgs(RedisCodec<K, V> codec) {
         this.codec  = codec;
@@ -36,8 +40,49 @@ public class CommandArgs<K, V> {
         return count;
     }
 
+    /**
+     * Get the number of bytes encoded so far.
+     *
+     * @return The encoded size of these args.
+     */
+    public int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Get a copy of the bytes encoded so far. Unlike {@link #buffer()} the
+     * args may still be added to and sent afterwards.
+     *
+     * @return The encoded args.
+     */
+    public byte[] toBytes() {
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Get the first key added to these args.
+     *
+     * @return The encoded key, or null if no keys were added.
+     */
+    public byte[] firstKey() {
+        return keys != null ? keys.get(0) : null;
+    }
+
+    /**
+     * Get all keys added to these args, in order.
+     *
+     * @return The encoded keys.
+     */
+    public List<byte[]> keys() {
+        return keys != null ? keys : Collections.<byte[]>emptyList();
+    }
+
     public CommandArgs<K, V> addKey(K key) {
-        return write(codec.encodeKey(key));
+        return writeKey(codec.encodeKey(key));
     }
 
     public CommandArgs<K, V> addKeys(K... keys) {
@@ -47,6 +92,25 @@ public class CommandArgs<K, V> {
         return this;
     }
 
+    /**
+     * Add a hash field, or another argument encoded like a key that does not
+     * name a key, such as a sorted set member or a client name.
+     *
+     * @param field Field to add.
+     *
+     * @return These args.
+     */
+    public CommandArgs<K, V> addField(K field) {
+        return write(codec.encodeKey(field));
+    }
+
+    public CommandArgs<K, V> addFields(K... fields) {
+        for (K field : fields) {
+            addField(field);
+        }
+        return this;
+    }
+
     public CommandArgs<K, V> addValue(V value) {
         return write(codec.encodeValue(value));
     }
@@ -59,12 +123,32 @@ public class CommandArgs<K, V> {
     }
 
     public CommandArgs<K, V> add(Map<K, V> map) {
+        return add(map, true);
+    }
+
+    /**
+     * Add the entries of a map as hash field and value pairs.
+     *
+     * @param map   Fields and values to add.
+     *
+     * @return These args.
+     */
+    public CommandArgs<K, V> addFields(Map<K, V> map) {
+        return add(map, false);
+    }
+
+    private CommandArgs<K, V> add(Map<K, V> map, boolean keys) {
         if (map.size() > 2) {
             realloc(buffer.capacity() + 16 * map.size());
         }
 
         for (Map.Entry<K, V> entry : map.entrySet()) {
-            write(codec.encodeKey(entry.getKey()));
+            byte[] key = codec.encodeKey(entry.getKey());
+            if (keys) {
+                writeKey(key);
+            } else {
+                write(key);
+            }
             write(codec.encodeValue(entry.getValue()));
         }
 
@@ -95,6 +179,12 @@ public class CommandArgs<K, V> {
         return write(type.bytes);
     }
 
+    private CommandArgs<K, V> writeKey(byte[] key) {
+        if (keys == null) keys = new ArrayList<byte[]>(2);
+        keys.add(key);
+        return write(key);
+    }
+
     private CommandArgs<K, V> write(byte[] arg) {
         buffer.mark();
 
@@ -29,14 +29,23 @@ public class CommandHandler<K, V> extends ChannelDuplexHandler {
     }
 
     @Override
-    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
         buffer = ctx.alloc().heapBuffer();
         rsm = new RedisStateMachine<K, V>();
+        ctx.fireChannelActive();
     }
 
     @Override
-    public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
-        buffer.release();
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        release();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isActive()) {
+            release();
+        }
     }
 
     @Override
@@ -63,6 +72,13 @@ public class CommandHandler<K, V> extends ChannelDuplexHandler {
         ctx.write(buf, promise);
     }
 
+    private void release() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+
     protected void decode(ChannelHandlerContext ctx, ByteBuf buffer) throws InterruptedException {
         while(!queue.isEmpty() && rsm.decode(buffer, queue.peek().getOutput())) {
             Command<K, V, ?> cmd = queue.take();
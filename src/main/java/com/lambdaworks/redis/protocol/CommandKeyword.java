@@ -9,7 +9,7 @@ package com.lambdaworks.redis.protocol;
  */
 public enum CommandKeyword {
     AFTER, AGGREGATE, ALPHA, AND, ASC, BEFORE, BY, COUNT, DESC, ENCODING, FLUSH,
-    GETNAME, IDLETIME, KILL, LEN, LIMIT, LIST, LOAD, MAX, MIN, NO, NOSAVE, NOT,
+    GETNAME, IDLETIME, KILL, LEN, LIMIT, LIST, LOAD, MATCH, MAX, MIN, NO, NODES, NOSAVE, NOT,
     ONE, OR, REFCOUNT, RESET, RESETSTAT, SETNAME, STORE, SUM, WEIGHTS,
     WITHSCORES, XOR;
 
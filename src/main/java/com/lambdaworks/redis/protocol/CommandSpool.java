@@ -0,0 +1,113 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.protocol;
+
+import com.lambdaworks.redis.RedisException;
+import io.netty.buffer.ByteBuf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped append-only file holding the encoded form of commands that
+ * are queued while the server is unreachable. Spooled commands keep only a
+ * view of their bytes in the file rather than their {@link CommandArgs}, so
+ * the heap stays bounded during long outages.
+ *
+ * The file is reused from the start once every spooled command has completed.
+ *
+ * @author Will Glozer
+ */
+public class CommandSpool {
+    private File file;
+    private RandomAccessFile raf;
+    private MappedByteBuffer buffer;
+    private int threshold;
+    private int pending;
+
+    /**
+     * Create a new spool backed by the supplied file.
+     *
+     * @param file      File to map, created if it does not exist.
+     * @param capacity  Maximum size of the spool in bytes.
+     * @param threshold Number of queued commands beyond which writes are spooled.
+     */
+    public CommandSpool(File file, int capacity, int threshold) {
+        try {
+            this.file      = file;
+            this.raf       = new RandomAccessFile(file, "rw");
+            this.buffer    = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            this.threshold = threshold;
+        } catch (IOException e) {
+            throw new RedisException("Unable to map spool file " + file, e);
+        }
+    }
+
+    /**
+     * Check if a command should be spooled given the current depth of the
+     * command queue.
+     *
+     * @param cmd   Command about to be queued.
+     * @param depth Number of commands already queued.
+     *
+     * @return true if the command should be spooled.
+     */
+    public boolean accepts(Command<?, ?, ?> cmd, int depth) {
+        return depth >= threshold && cmd.type.isWrite();
+    }
+
+    /**
+     * Append the encoded command to the spool.
+     *
+     * @param encoded   Encoded command.
+     *
+     * @return A view of the spooled bytes, or null if the spool is full.
+     */
+    public synchronized ByteBuffer append(ByteBuf encoded) {
+        int length = encoded.readableBytes();
+        if (buffer == null || buffer.remaining() < length) return null;
+
+        ByteBuffer view = buffer.slice();
+        view.limit(length);
+        buffer.put(encoded.nioBuffer());
+
+        pending++;
+        return view;
+    }
+
+    /**
+     * Release the space held by a spooled command that has completed. The
+     * spool is rewound once no spooled commands remain.
+     */
+    public synchronized void release() {
+        if (--pending == 0 && buffer != null) {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Get the number of spooled commands that have not yet completed.
+     *
+     * @return Number of spooled commands.
+     */
+    public synchronized int size() {
+        return pending;
+    }
+
+    /**
+     * Close the spool and delete the backing file.
+     */
+    public synchronized void close() {
+        buffer = null;
+        try {
+            raf.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        file.delete();
+    }
+}
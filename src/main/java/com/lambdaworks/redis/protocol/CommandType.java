@@ -2,6 +2,8 @@
 
 package com.lambdaworks.redis.protocol;
 
+import java.util.EnumSet;
+
 /**
  * Redis commands.
  *
@@ -15,13 +17,14 @@ public enum CommandType {
     // Server
 
     BGREWRITEAOF, BGSAVE, CLIENT, CONFIG, DBSIZE, DEBUG, FLUSHALL,
-    FLUSHDB, INFO, LASTSAVE, MONITOR, SAVE, SHUTDOWN, SLAVEOF,
+    FLUSHDB, INFO, LASTSAVE, MONITOR, SAVE, SENTINEL, SHUTDOWN, SLAVEOF,
     SLOWLOG, SYNC,
 
     // Keys
 
     DEL, DUMP, EXISTS, EXPIRE, EXPIREAT, KEYS, MIGRATE, MOVE, OBJECT, PERSIST,
-    PEXPIRE, PEXPIREAT, PTTL, RANDOMKEY, RENAME, RENAMENX, RESTORE, TTL, TYPE,
+    PEXPIRE, PEXPIREAT, PTTL, RANDOMKEY, RENAME, RENAMENX, RESTORE, SCAN, TTL,
+    TYPE,
 
     // String
 
@@ -41,7 +44,7 @@ public enum CommandType {
     // Hash
 
     HDEL, HEXISTS, HGET, HGETALL, HINCRBY, HINCRBYFLOAT, HKEYS, HLEN,
-    HMGET, HMSET, HSET, HSETNX, HVALS,
+    HMGET, HMSET, HSCAN, HSET, HSETNX, HVALS,
 
     // Transaction
 
@@ -54,13 +57,17 @@ public enum CommandType {
     // Sets
 
     SADD, SCARD, SDIFF, SDIFFSTORE, SINTER, SINTERSTORE, SISMEMBER,
-    SMEMBERS, SMOVE, SPOP, SRANDMEMBER, SREM, SUNION, SUNIONSTORE,
+    SMEMBERS, SMOVE, SPOP, SRANDMEMBER, SREM, SSCAN, SUNION, SUNIONSTORE,
 
     // Sorted Set
 
     ZADD, ZCARD, ZCOUNT, ZINCRBY, ZINTERSTORE, ZRANGE, ZRANGEBYSCORE,
     ZRANK, ZREM, ZREMRANGEBYRANK, ZREMRANGEBYSCORE, ZREVRANGE,
-    ZREVRANGEBYSCORE, ZREVRANK, ZSCORE, ZUNIONSTORE,
+    ZREVRANGEBYSCORE, ZREVRANK, ZSCAN, ZSCORE, ZUNIONSTORE,
+
+    // Cluster
+
+    ASKING, CLUSTER,
 
     // Scripting
 
@@ -70,9 +77,63 @@ public enum CommandType {
 
     BITCOUNT, BITOP, GETBIT, SETBIT;
 
+    private static final EnumSet<CommandType> WRITE = EnumSet.of(
+        FLUSHALL, FLUSHDB,
+        DEL, EXPIRE, EXPIREAT, MIGRATE, MOVE, PERSIST, PEXPIRE, PEXPIREAT, RENAME, RENAMENX, RESTORE,
+        APPEND, GETSET, MSET, MSETNX, SET, SETEX, SETNX, SETRANGE,
+        DECR, DECRBY, INCR, INCRBY, INCRBYFLOAT,
+        BLPOP, BRPOP, BRPOPLPUSH, LINSERT, LPOP, LPUSH, LPUSHX, LREM, LSET, LTRIM,
+        RPOP, RPOPLPUSH, RPUSH, RPUSHX, SORT,
+        HDEL, HINCRBY, HINCRBYFLOAT, HMSET, HSET, HSETNX,
+        SADD, SDIFFSTORE, SINTERSTORE, SMOVE, SPOP, SREM, SUNIONSTORE,
+        ZADD, ZINCRBY, ZINTERSTORE, ZREM, ZREMRANGEBYRANK, ZREMRANGEBYSCORE, ZUNIONSTORE,
+        EVAL, EVALSHA,
+        BITOP, SETBIT);
+
+    private static final EnumSet<CommandType> READ_ONLY = EnumSet.of(
+        DUMP, EXISTS, KEYS, PTTL, RANDOMKEY, SCAN, TTL, TYPE,
+        GET, GETRANGE, MGET, STRLEN,
+        LINDEX, LLEN, LRANGE,
+        HEXISTS, HGET, HGETALL, HKEYS, HLEN, HMGET, HSCAN, HVALS,
+        SCARD, SDIFF, SINTER, SISMEMBER, SMEMBERS, SRANDMEMBER, SSCAN, SUNION,
+        ZCARD, ZCOUNT, ZRANGE, ZRANGEBYSCORE, ZRANK, ZREVRANGE, ZREVRANGEBYSCORE, ZREVRANK, ZSCAN, ZSCORE,
+        BITCOUNT, GETBIT);
+
+    private static final EnumSet<CommandType> BLOCKING = EnumSet.of(
+        BLPOP, BRPOP, BRPOPLPUSH);
+
     public byte[] bytes;
 
     private CommandType() {
         bytes = name().getBytes(Charsets.ASCII);
     }
+
+    /**
+     * Check if commands of this type may modify the dataset.
+     *
+     * @return true if this is a write command.
+     */
+    public boolean isWrite() {
+        return WRITE.contains(this);
+    }
+
+    /**
+     * Check if commands of this type only read the dataset and may be served
+     * by a replica.
+     *
+     * @return true if this is a read-only command.
+     */
+    public boolean isReadOnly() {
+        return READ_ONLY.contains(this);
+    }
+
+    /**
+     * Check if commands of this type may block the connection while the
+     * server waits for data.
+     *
+     * @return true if this is a blocking command.
+     */
+    public boolean isBlocking() {
+        return BLOCKING.contains(this);
+    }
 }
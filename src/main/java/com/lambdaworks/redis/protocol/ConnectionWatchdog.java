@@ -10,7 +10,11 @@ import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -22,11 +26,25 @@ import java.util.concurrent.TimeUnit;
 @ChannelHandler.Sharable
 public class ConnectionWatchdog extends ChannelInboundHandlerAdapter implements TimerTask {
     private Bootstrap bootstrap;
-    private Channel channel;
+    private volatile Channel channel;
     private ChannelGroup channels;
     private Timer timer;
     private boolean reconnect;
     private int attempts;
+    private HotStandby<?, ?> standby;
+    private ChannelFutureListener retry = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (future.isSuccess()) return;
+            ChannelPipeline pipeline = future.channel().pipeline();
+            if (pipeline.context(ConnectionWatchdog.this) != null) {
+                pipeline.fireChannelInactive();
+            } else {
+                // handlers of the failed channel may already have been removed
+                reconnect();
+            }
+        }
+    };
 
     /**
      * Create a new watchdog that adds to new connections to the supplied {@link ChannelGroup}
@@ -43,6 +61,83 @@ public class ConnectionWatchdog extends ChannelInboundHandlerAdapter implements
 
     public void setReconnect(boolean reconnect) {
         this.reconnect = reconnect;
+        if (!reconnect && standby != null) {
+            standby.close();
+        }
+    }
+
+    /**
+     * Establish the first channel, retrying with the reconnect backoff until it
+     * succeeds. Does nothing once reconnection has been enabled.
+     */
+    public synchronized void connect() {
+        if (reconnect) return;
+        reconnect = true;
+        bootstrap.connect().addListener(retry);
+    }
+
+    /**
+     * Promote the supplied {@link HotStandby} when the channel is lost, falling
+     * back to a delayed reconnect when the standby is not ready. The standby is
+     * started once the first channel is active.
+     *
+     * @param standby   Standby channel, or null.
+     */
+    public void setStandby(HotStandby<?, ?> standby) {
+        this.standby = standby;
+    }
+
+    /**
+     * Get the standby channel promoted when the channel is lost.
+     *
+     * @return The standby, or null.
+     */
+    public HotStandby<?, ?> getStandby() {
+        return standby;
+    }
+
+    /**
+     * Connect to a different address from now on, for example after a failover.
+     * The current channel is closed if connected elsewhere so queued commands
+     * are resent to the new address after the usual reconnect. An unresolved
+     * address is resolved to decide whether the channel is connected to it.
+     *
+     * @param address   New remote address.
+     */
+    public void setRemoteAddress(SocketAddress address) {
+        bootstrap.remoteAddress(address);
+        if (standby != null) standby.setRemoteAddress(address);
+
+        Channel channel = this.channel;
+        if (channel != null && channel.isActive() && !isSameAddress(address, channel.remoteAddress())) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Check whether a channel connected to the remote address is connected to
+     * the supplied address, comparing the IP address and port of socket addresses.
+     *
+     * @param address   Address to connect to.
+     * @param remote    Remote address of a connected channel.
+     *
+     * @return true if the addresses are the same.
+     */
+    static boolean isSameAddress(SocketAddress address, SocketAddress remote) {
+        if (!(address instanceof InetSocketAddress) || !(remote instanceof InetSocketAddress)) {
+            return address.equals(remote);
+        }
+
+        InetSocketAddress a = (InetSocketAddress) address;
+        InetSocketAddress r = (InetSocketAddress) remote;
+        if (a.getPort() != r.getPort()) return false;
+        if (!a.isUnresolved()) return a.getAddress().equals(r.getAddress());
+
+        try {
+            return Arrays.asList(InetAddress.getAllByName(a.getHostName())).contains(r.getAddress());
+        } catch (UnknownHostException e) {
+            return false;
+        }
     }
 
     @Override
@@ -50,17 +145,23 @@ public class ConnectionWatchdog extends ChannelInboundHandlerAdapter implements
         channel = ctx.channel();
         channels.add(channel);
         attempts = 0;
+        if (standby != null) standby.start();
         ctx.fireChannelActive();
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        ctx.fireChannelInactive();
+        reconnect();
+    }
+
+    private void reconnect() {
         if (reconnect) {
+            if (standby != null && standby.promote()) return;
             if (attempts < 8) attempts++;
             int timeout = 2 << attempts;
             timer.newTimeout(this, timeout, TimeUnit.MILLISECONDS);
         }
-        ctx.fireChannelInactive();
     }
 
     @Override
@@ -79,13 +180,6 @@ public class ConnectionWatchdog extends ChannelInboundHandlerAdapter implements
      */
     @Override
     public void run(Timeout timeout) throws Exception {
-        bootstrap.connect().addListener(new ChannelFutureListener() {
-            @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-                if (!future.isSuccess()) {
-                    future.channel().pipeline().fireChannelInactive();
-                }
-            }
-        });
+        bootstrap.connect().addListener(retry);
     }
 }
@@ -0,0 +1,101 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.protocol;
+
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.FailCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A command split into sub-commands that are sent to several servers. The
+ * result of each sub-command is merged into this command's output, which
+ * completes once every sub-command has completed.
+ *
+ * When some sub-commands fail the output holds the merged results of the
+ * others and an error describing each failure.
+ *
+ * @param <S> Sub-command output type.
+ * @param <T> Command output type.
+ *
+ * @author Will Glozer
+ */
+public abstract class FanOutCommand<K, V, S, T> extends Command<K, V, T> {
+    private int parts;
+    private int pending;
+    private List<String> errors;
+
+    /**
+     * Create a new fan-out command.
+     *
+     * @param type      Command type.
+     * @param output    Merged command output.
+     * @param parts     Number of sub-commands.
+     */
+    public FanOutCommand(CommandType type, CommandOutput<K, V, T> output, int parts) {
+        super(type, output, null, false);
+        this.parts   = parts;
+        this.pending = parts;
+        this.errors  = new ArrayList<String>();
+    }
+
+    /**
+     * Merge the result of a sub-command into this command once it completes.
+     *
+     * @param index Index of the sub-command, from 0 to parts - 1.
+     * @param part  Sub-command.
+     *
+     * @return The sub-command.
+     */
+    public Command<K, V, S> join(final int index, Command<K, V, S> part) {
+        part.then(new Callback<S>() {
+            @Override
+            public void call(S value) {
+                done(index, value, null);
+            }
+        }, new FailCallback() {
+            @Override
+            public void fail(String error) {
+                done(index, null, error != null ? error : "ERR no reply");
+            }
+        });
+        return part;
+    }
+
+    /**
+     * Merge the result of a successful sub-command.
+     *
+     * @param index Index of the sub-command.
+     * @param value Result of the sub-command.
+     */
+    protected abstract void merge(int index, S value);
+
+    /**
+     * Store the merged result in the output, called once before completion.
+     */
+    protected void finish() {
+        // nothing to do by default
+    }
+
+    private synchronized void done(int index, S value, String error) {
+        if (error == null) {
+            merge(index, value);
+        } else {
+            errors.add(error);
+        }
+
+        if (--pending > 0 || output == null) return;
+
+        finish();
+        if (!errors.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(errors.size()).append(" of ").append(parts).append(" parts of ").append(type).append(" failed");
+            for (String e : errors) {
+                sb.append("; ").append(e);
+            }
+            output.setError(sb.toString());
+        }
+        complete();
+    }
+}
@@ -0,0 +1,250 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.protocol;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.output.StatusOutput;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.*;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.lambdaworks.redis.protocol.CommandType.PING;
+
+/**
+ * A pre-established and authenticated standby {@link Channel} for a connection.
+ * The standby is health-checked with PING and {@link #promote promoted} by the
+ * {@link ConnectionWatchdog} when the active channel is lost, so pending commands
+ * can be resent without waiting for a new TCP connection. A replacement standby
+ * is established in the background after each promotion.
+ *
+ * @author Will Glozer
+ */
+@ChannelHandler.Sharable
+public class HotStandby<K, V> extends ChannelInboundHandlerAdapter implements TimerTask {
+    private Bootstrap bootstrap;
+    private ChannelHandler initializer;
+    private Timer timer;
+    private RedisAsyncConnection<K, V> connection;
+    private RedisCodec<K, V> codec;
+    private long interval;
+
+    private Channel channel;
+    private BlockingQueue<Command<K, V, ?>> queue;
+    private CommandHandler<K, V> handler;
+    private Command<K, V, String> ping;
+    private boolean healthy;
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Create a new standby for the supplied connection.
+     *
+     * @param bootstrap     Configuration of the connection's channels.
+     * @param initializer   Handler that installs the connection's pipeline on a channel.
+     * @param timer         Timer used for health checks and delayed reconnect.
+     * @param connection    Connection the standby replaces channels for.
+     * @param codec         Codec used by the connection.
+     * @param interval      Interval between health checks.
+     * @param unit          Unit of time for the interval.
+     */
+    public HotStandby(Bootstrap bootstrap, ChannelHandler initializer, Timer timer, RedisAsyncConnection<K, V> connection,
+                      RedisCodec<K, V> codec, long interval, TimeUnit unit) {
+        this.bootstrap   = bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                ch.pipeline().addLast(handler, HotStandby.this);
+            }
+        });
+        this.initializer = initializer;
+        this.timer       = timer;
+        this.connection  = connection;
+        this.codec       = codec;
+        this.interval    = unit.toMillis(interval);
+    }
+
+    /**
+     * Establish the standby channel and begin health checks. Does nothing if
+     * the standby has already been started.
+     */
+    public synchronized void start() {
+        if (started || closed) return;
+        started = true;
+        connect();
+        timer.newTimeout(this, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Check if the standby channel is connected, answered its last health check
+     * and has no commands awaiting a reply. A reply arriving after promotion
+     * would otherwise complete a command of the connection.
+     *
+     * @return true if the standby may be promoted.
+     */
+    public synchronized boolean isReady() {
+        if (ping != null && ping.isDone()) {
+            CommandOutput<K, V, String> output = ping.getOutput();
+            healthy = output != null && "PONG".equals(output.get());
+        }
+        return !closed && channel != null && channel.isActive() && healthy && queue.isEmpty();
+    }
+
+    /**
+     * Replace the standby's pipeline with the connection's pipeline and activate
+     * it, then establish a new standby in the background.
+     *
+     * @return true if the standby was promoted, false if it was not ready.
+     */
+    public boolean promote() {
+        ChannelPipeline pipeline;
+
+        synchronized (this) {
+            if (!isReady()) return false;
+
+            pipeline = channel.pipeline();
+            pipeline.remove(this);
+            pipeline.remove(handler);
+
+            channel = null;
+            ping    = null;
+            healthy = false;
+
+            connect();
+        }
+
+        // The channel is already registered, so adding the initializer installs
+        // the connection's handlers at once, and the initializer's own record of
+        // initialized contexts keeps the replayed channelRegistered from
+        // installing them twice. Replaying channelRegistered and channelActive
+        // only delivers to the new handlers the events a freshly connected
+        // channel would: the watchdog adopts the channel and the connection
+        // resends its queued commands. The standby's handlers were removed
+        // above and see neither event, and the channel is never re-registered.
+        pipeline.addLast(initializer);
+        pipeline.fireChannelRegistered();
+        pipeline.fireChannelActive();
+        return true;
+    }
+
+    /**
+     * Establish the standby channel to a different address from now on,
+     * closing the current standby channel if connected elsewhere.
+     *
+     * @param address   New remote address.
+     */
+    public synchronized void setRemoteAddress(SocketAddress address) {
+        bootstrap.remoteAddress(address);
+        if (channel != null && !ConnectionWatchdog.isSameAddress(address, channel.remoteAddress())) {
+            healthy = false;
+            channel.close();
+        }
+    }
+
+    /**
+     * Close the standby channel and stop health checks.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        List<Command<K, V, ?>> handshake = connection.handshake();
+
+        synchronized (this) {
+            channel = ctx.channel();
+            if (closed) {
+                channel.close();
+                return;
+            }
+
+            for (Command<K, V, ?> cmd : handshake) {
+                queue.add(cmd);
+                channel.write(cmd);
+            }
+            ping();
+        }
+    }
+
+    @Override
+    public synchronized void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel() == channel) {
+            channel = null;
+            healthy = false;
+            reconnect();
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        ctx.channel().close();
+    }
+
+    /**
+     * Health check the standby channel. A channel that did not answer the
+     * previous PING within the interval is closed and replaced.
+     *
+     * @param timeout Timer task handle.
+     */
+    @Override
+    public synchronized void run(Timeout timeout) {
+        if (closed) return;
+
+        if (channel != null) {
+            if (ping != null && !ping.isDone()) {
+                healthy = false;
+                channel.close();
+            } else {
+                isReady();
+                ping();
+            }
+        }
+
+        timer.newTimeout(this, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void ping() {
+        ping = new Command<K, V, String>(PING, new StatusOutput<K, V>(codec), null, false);
+        queue.add(ping);
+        channel.writeAndFlush(ping);
+    }
+
+    private void connect() {
+        queue   = new LinkedBlockingQueue<Command<K, V, ?>>();
+        handler = new CommandHandler<K, V>(queue);
+        bootstrap.connect().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    synchronized (HotStandby.this) {
+                        reconnect();
+                    }
+                }
+            }
+        });
+    }
+
+    private void reconnect() {
+        if (closed) return;
+        timer.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                synchronized (HotStandby.this) {
+                    if (!closed && channel == null) connect();
+                }
+            }
+        }, interval, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,303 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.sentinel;
+
+import com.lambdaworks.redis.*;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+import com.lambdaworks.redis.pubsub.RedisPubSubAdapter;
+import com.lambdaworks.redis.pubsub.RedisPubSubConnection;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client for a master monitored by <a href="http://redis.io/topics/sentinel">Redis Sentinel</a>.
+ * The address of the master is obtained from the first Sentinel that answers,
+ * and the client subscribes to +switch-master on that Sentinel. When the master
+ * fails over, every connection opened by this client is re-pointed to the new
+ * master and commands queued on it are resent there.
+ *
+ * The Sentinel is pinged at the {@link #setCheckInterval check interval}, and
+ * when it does not answer before the next check the subscription and queries
+ * move to the next Sentinel in the list.
+ *
+ * @author Will Glozer
+ */
+public class RedisSentinelClient implements TimerTask {
+    private static final String SWITCH_MASTER = "+switch-master";
+
+    private String masterName;
+    private List<String> sentinels;
+    private ClientResources resources;
+    private boolean shared;
+    private long timeout;
+    private TimeUnit unit;
+    private long checkInterval;
+
+    private RedisClient client;
+    private String master;
+    private RedisClient sentinel;
+    private RedisAsyncConnection<String, String> query;
+    private RedisPubSubConnection<String, String> events;
+    private int current;
+    private ListenableFuture<String> ping;
+    private boolean closed;
+
+    /**
+     * Create a new client for the named master, monitored by the Sentinel at
+     * the supplied host and port. More Sentinels may be added with {@link #addSentinel}.
+     *
+     * @param masterName    Name of the master as configured in the Sentinels.
+     * @param host          Sentinel hostname.
+     * @param port          Sentinel port.
+     */
+    public RedisSentinelClient(String masterName, String host, int port) {
+        this(masterName, host, port, new ClientResources(), false);
+    }
+
+    /**
+     * Create a new client for the named master using threads from the
+     * supplied {@link ClientResources}.
+     *
+     * @param masterName    Name of the master as configured in the Sentinels.
+     * @param host          Sentinel hostname.
+     * @param port          Sentinel port.
+     * @param resources     Shared client resources.
+     */
+    public RedisSentinelClient(String masterName, String host, int port, ClientResources resources) {
+        this(masterName, host, port, resources, true);
+    }
+
+    private RedisSentinelClient(String masterName, String host, int port, ClientResources resources, boolean shared) {
+        this.masterName = masterName;
+        this.sentinels  = new ArrayList<String>();
+        this.resources  = resources;
+        this.shared     = shared;
+        addSentinel(host, port);
+        setDefaultTimeout(60, TimeUnit.SECONDS);
+        setCheckInterval(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Add a Sentinel to query when the previously added ones are unreachable.
+     *
+     * @param host  Sentinel hostname.
+     * @param port  Sentinel port.
+     */
+    public synchronized void addSentinel(String host, int port) {
+        sentinels.add(host + ":" + port);
+    }
+
+    /**
+     * Set the default timeout for connections created by this client.
+     *
+     * @param timeout   Default connection timeout.
+     * @param unit      Unit of time for the timeout.
+     */
+    public void setDefaultTimeout(long timeout, TimeUnit unit) {
+        this.timeout = timeout;
+        this.unit    = unit;
+    }
+
+    /**
+     * Set the interval at which the Sentinel is pinged. A Sentinel that has
+     * not answered the previous PING is replaced by the next one in the list.
+     * A zero interval disables the checks.
+     *
+     * @param interval  Interval between checks.
+     * @param unit      Unit of time for the interval.
+     */
+    public void setCheckInterval(long interval, TimeUnit unit) {
+        this.checkInterval = unit.toMillis(interval);
+    }
+
+    /**
+     * Get the address of the current master.
+     *
+     * @return The master address in host:port form.
+     */
+    public synchronized String getMaster() {
+        master();
+        return master;
+    }
+
+    /**
+     * Open a new synchronous connection to the master that treats keys and
+     * values as UTF-8 strings.
+     *
+     * @return A new connection.
+     */
+    public RedisConnection<String, String> connect() {
+        return master().connect();
+    }
+
+    /**
+     * Open a new synchronous connection to the master. Use the supplied
+     * {@link RedisCodec codec} to encode/decode keys and values.
+     *
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A new connection.
+     */
+    public <K, V> RedisConnection<K, V> connect(RedisCodec<K, V> codec) {
+        return master().connect(codec);
+    }
+
+    /**
+     * Open a new asynchronous connection to the master. Use the supplied
+     * {@link RedisCodec codec} to encode/decode keys and values.
+     *
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A new connection.
+     */
+    public <K, V> RedisAsyncConnection<K, V> connectAsync(RedisCodec<K, V> codec) {
+        return master().connectAsync(codec);
+    }
+
+    /**
+     * Open a new pub/sub connection to the master. Use the supplied
+     * {@link RedisCodec codec} to encode/decode keys and values.
+     *
+     * @param codec Use this codec to encode/decode keys and values.
+     *
+     * @return A new pub/sub connection.
+     */
+    public <K, V> RedisPubSubConnection<K, V> connectPubSub(RedisCodec<K, V> codec) {
+        return master().connectPubSub(codec);
+    }
+
+    /**
+     * Shutdown this client and close all open connections. The client should be
+     * discarded after calling shutdown. Shared {@link ClientResources} are not
+     * shut down.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            closed = true;
+            if (client != null) client.shutdown();
+            if (sentinel != null) sentinel.shutdown();
+        }
+        if (!shared) resources.shutdown();
+    }
+
+    private synchronized RedisClient master() {
+        if (client != null) return client;
+
+        RedisException failure = null;
+        for (int i = 0; i < sentinels.size(); i++) {
+            String address = sentinels.get(i);
+            int colon = address.lastIndexOf(':');
+            RedisClient sentinel = new RedisClient(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)), resources);
+            sentinel.setDefaultTimeout(timeout, unit);
+            try {
+                RedisAsyncConnection<String, String> query = sentinel.connectAsync();
+                List<String> reply = query.sentinelGetMasterAddrByName(masterName).get(timeout, unit);
+                if (reply == null || reply.size() < 2) {
+                    throw new RedisException("Sentinel " + address + " does not know master " + masterName);
+                }
+
+                this.sentinel = sentinel;
+                this.current  = i;
+                this.query    = query;
+                this.master   = reply.get(0) + ":" + reply.get(1);
+                this.client   = new RedisClient(reply.get(0), Integer.parseInt(reply.get(1)), resources);
+                this.client.setDefaultTimeout(timeout, unit);
+                subscribe();
+                schedule();
+                return client;
+            } catch (Exception e) {
+                sentinel.shutdown();
+                failure = e instanceof RedisException ? (RedisException) e : new RedisException("Unable to query Sentinel " + address, e);
+            }
+        }
+        throw failure;
+    }
+
+    private void subscribe() {
+        events = sentinel.connectPubSub();
+        events.addListener(new RedisPubSubAdapter<String, String>() {
+            @Override
+            public void message(String channel, String message) {
+                String[] address = switchMaster(masterName, message);
+                if (address != null) failover(address[0], address[1]);
+            }
+
+            @Override
+            public void subscribed(String channel, long count) {
+                verify();
+            }
+        });
+        events.subscribe(SWITCH_MASTER);
+    }
+
+    /**
+     * Periodic check of the Sentinel. When the previous PING is unanswered
+     * the Sentinel connections are re-pointed to the next Sentinel, where the
+     * subscription is resent, and that Sentinel is pinged at the next check.
+     *
+     * @param timeout Timer task handle.
+     */
+    @Override
+    public synchronized void run(Timeout timeout) {
+        if (closed) return;
+
+        if (ping != null && !ping.isDone()) {
+            if (sentinels.size() > 1) {
+                current = (current + 1) % sentinels.size();
+                String address = sentinels.get(current);
+                int colon = address.lastIndexOf(':');
+                sentinel.setRemoteAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+            }
+            ping = null;
+        } else {
+            ping = query.ping();
+        }
+
+        schedule();
+    }
+
+    private void schedule() {
+        if (checkInterval > 0) {
+            resources.timer().newTimeout(this, checkInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Parse a +switch-master message, which has the form
+     * "&lt;name&gt; &lt;old-ip&gt; &lt;old-port&gt; &lt;new-ip&gt; &lt;new-port&gt;".
+     *
+     * @param masterName    Name of the master.
+     * @param message       Message received on +switch-master.
+     *
+     * @return The host and port of the new master, or null if the message
+     *         concerns another master.
+     */
+    static String[] switchMaster(String masterName, String message) {
+        String[] fields = message.split(" ");
+        if (fields.length < 5 || !masterName.equals(fields[0])) return null;
+        return new String[] { fields[3], fields[4] };
+    }
+
+    private void verify() {
+        query.sentinelGetMasterAddrByName(masterName).then(new Callback<List<String>>() {
+            @Override
+            public void call(List<String> reply) {
+                if (reply != null && reply.size() >= 2) failover(reply.get(0), reply.get(1));
+            }
+        });
+    }
+
+    private synchronized void failover(String host, String port) {
+        String address = host + ":" + port;
+        if (address.equals(master)) return;
+        master = address;
+        client.setRemoteAddress(host, Integer.parseInt(port));
+    }
+}
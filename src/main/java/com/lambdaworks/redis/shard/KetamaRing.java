@@ -0,0 +1,140 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.shard;
+
+import com.lambdaworks.redis.RedisException;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A ketama consistent-hash ring. Each node is placed on the ring at points
+ * derived from the MD5 digest of its name, in proportion to its weight, and
+ * a key belongs to the first node at or after the hash of the key. Adding or
+ * removing a node only moves the keys of that node.
+ *
+ * Only the part of a key between the first '{' and the following '}' is
+ * hashed when that part is not empty, so related keys can be placed on the
+ * same node with a {hash-tag}.
+ *
+ * @param <T> Node type.
+ *
+ * @author Will Glozer
+ */
+public class KetamaRing<T> {
+    private static final int POINTS_PER_WEIGHT = 160;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private Map<String, T> nodes;
+    private Map<String, Integer> weights;
+    private volatile TreeMap<Long, T> ring;
+
+    /**
+     * Create a new empty ring.
+     */
+    public KetamaRing() {
+        nodes   = new LinkedHashMap<String, T>();
+        weights = new HashMap<String, Integer>();
+        ring    = new TreeMap<Long, T>();
+    }
+
+    /**
+     * Add a node to the ring.
+     *
+     * @param name      Unique name of the node, usually its host:port.
+     * @param node      The node.
+     * @param weight    Relative share of keys the node owns.
+     */
+    public synchronized void add(String name, T node, int weight) {
+        if (weight < 1) throw new IllegalArgumentException("weight must be positive");
+        nodes.put(name, node);
+        weights.put(name, weight);
+        rebuild();
+    }
+
+    /**
+     * Remove a node from the ring.
+     *
+     * @param name  Name of the node.
+     *
+     * @return The removed node, or null.
+     */
+    public synchronized T remove(String name) {
+        T node = nodes.remove(name);
+        weights.remove(name);
+        rebuild();
+        return node;
+    }
+
+    /**
+     * Get the node owning an encoded key.
+     *
+     * @param key   Encoded key.
+     *
+     * @return The node.
+     *
+     * @throws RedisException if the ring is empty.
+     */
+    public T get(byte[] key) {
+        TreeMap<Long, T> ring = this.ring;
+        if (ring.isEmpty()) throw new RedisException("No shards available");
+
+        Map.Entry<Long, T> entry = ring.ceilingEntry(hash(md5(hashTag(key)), 0));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * Get all nodes of the ring in the order they were added.
+     *
+     * @return The nodes.
+     */
+    public synchronized List<T> nodes() {
+        return new ArrayList<T>(nodes.values());
+    }
+
+    private void rebuild() {
+        TreeMap<Long, T> ring = new TreeMap<Long, T>();
+        for (Map.Entry<String, T> entry : nodes.entrySet()) {
+            String name = entry.getKey();
+            int points  = POINTS_PER_WEIGHT * weights.get(name);
+            for (int i = 0; i < points / 4; i++) {
+                byte[] digest = md5((name + "-" + i).getBytes(UTF8));
+                for (int h = 0; h < 4; h++) {
+                    ring.put(hash(digest, h), entry.getValue());
+                }
+            }
+        }
+        this.ring = ring;
+    }
+
+    static byte[] hashTag(byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] == '{') {
+                for (int j = i + 1; j < key.length; j++) {
+                    if (key[j] == '}') {
+                        return j > i + 1 ? Arrays.copyOfRange(key, i + 1, j) : key;
+                    }
+                }
+                break;
+            }
+        }
+        return key;
+    }
+
+    static long hash(byte[] digest, int n) {
+        return ((long) (digest[3 + n * 4] & 0xff) << 24)
+             | ((long) (digest[2 + n * 4] & 0xff) << 16)
+             | ((long) (digest[1 + n * 4] & 0xff) << 8)
+             |  (long) (digest[n * 4] & 0xff);
+    }
+
+    private static byte[] md5(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RedisException("JVM does not support MD5");
+        }
+    }
+}
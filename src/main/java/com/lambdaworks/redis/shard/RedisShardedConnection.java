@@ -0,0 +1,89 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.shard;
+
+import com.lambdaworks.redis.AbstractRoutingConnection;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisException;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandArgs;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An asynchronous connection that shards keys across independent redis
+ * servers with a {@link KetamaRing}. Each command is sent to the server owning
+ * its key, and MGET, MSET and DEL are split across shards. Commands without
+ * keys and other commands whose keys are owned by different servers are
+ * rejected, use {@link #shard} to send them to a specific server. AUTH and
+ * SELECT are sent to every shard.
+ *
+ * @author Will Glozer
+ */
+public class RedisShardedConnection<K, V> extends AbstractRoutingConnection<K, V> {
+    private KetamaRing<RedisAsyncConnection<K, V>> ring;
+
+    /**
+     * Initialize a new sharded connection.
+     *
+     * @param ring    Ring of connections to the shards.
+     * @param codec   Codec used to encode/decode keys and values.
+     * @param timeout Maximum time to wait for a response.
+     * @param unit    Unit of time for the timeout.
+     */
+    public RedisShardedConnection(KetamaRing<RedisAsyncConnection<K, V>> ring, RedisCodec<K, V> codec, long timeout, TimeUnit unit) {
+        super(codec, timeout, unit);
+        this.ring = ring;
+    }
+
+    /**
+     * Get the connection to the shard owning a key.
+     *
+     * @param key   Key.
+     *
+     * @return The shard connection.
+     */
+    public RedisAsyncConnection<K, V> shard(K key) {
+        return ring.get(codec.encodeKey(key));
+    }
+
+    /**
+     * Get the connections to all shards, for example to query a sorted set
+     * partitioned across shards with a {@link com.lambdaworks.redis.ScoredValueMergeIterator}.
+     *
+     * @return The shard connections.
+     */
+    public List<RedisAsyncConnection<K, V>> shards() {
+        return ring.nodes();
+    }
+
+    @Override
+    protected RedisAsyncConnection<K, V> route(Command<K, V, ?> cmd) {
+        CommandArgs<K, V> args = cmd.getArgs();
+        List<byte[]> keys = args != null ? args.keys() : null;
+        if (keys == null || keys.isEmpty()) {
+            throw new RedisException(cmd.type + " has no key to choose a shard with");
+        }
+
+        RedisAsyncConnection<K, V> connection = ring.get(keys.get(0));
+        for (int i = 1; i < keys.size(); i++) {
+            if (ring.get(keys.get(i)) != connection) {
+                throw new RedisException("Keys of " + cmd.type + " span multiple shards");
+            }
+        }
+        return connection;
+    }
+
+    @Override
+    protected Object partition(byte[] key) {
+        return ring.get(key);
+    }
+
+    @Override
+    protected Collection<RedisAsyncConnection<K, V>> connections() {
+        return ring.nodes();
+    }
+}
@@ -27,6 +27,19 @@ public class AsyncConnectionTest extends AbstractCommandTest {
         async.close();
     }
 
+    private RedisAsyncConnection<String, String> pooled() {
+        client.setBlockingPoolSize(2);
+        try {
+            return client.connectAsync();
+        } finally {
+            client.setBlockingPoolSize(0);
+        }
+    }
+
+    private int clients() {
+        return redis.clientList().split("\n").length;
+    }
+
     @Test
     public void multi() throws Exception {
         assertEquals("OK", async.multi().get());
@@ -64,6 +77,104 @@ public class AsyncConnectionTest extends AbstractCommandTest {
         assertNull(set.get());
     }
 
+    @Test(timeout = 1000)
+    public void blockingCommandDoesNotStallConnection() throws Exception {
+        RedisAsyncConnection<String, String> async = pooled();
+        Future<KeyValue<String, String>> blpop = async.blpop(2, key);
+        assertEquals("OK", async.set(value, value).get());
+        assertFalse(blpop.isDone());
+        assertEquals(1L, (long) async.rpush(key, value).get());
+        assertEquals(kv(key, value), blpop.get());
+        async.close();
+    }
+
+    @Test(timeout = 5000)
+    public void cancelledBlockingCommandClosesConnection() throws Exception {
+        RedisAsyncConnection<String, String> async = pooled();
+        int clients = clients();
+        Future<KeyValue<String, String>> blpop = async.blpop(0, key);
+        while (clients() == clients) {
+            Thread.sleep(10);
+        }
+        assertTrue(blpop.cancel(true));
+        while (clients() > clients) {
+            Thread.sleep(10);
+        }
+        assertEquals(1L, (long) async.rpush(key, value).get());
+        assertEquals(list(value), redis.lrange(key, 0, -1));
+        async.close();
+    }
+
+    @Test(timeout = 1000)
+    public void blockingCommandOnConnectionByDefault() throws Exception {
+        assertNull(async.blockingPool);
+        assertEquals(1L, (long) async.rpush(key, value).get());
+        assertEquals(kv(key, value), async.blpop(1, key).get());
+    }
+
+    @Test
+    public void batcher() throws Exception {
+        redis.set("a", "1");
+        redis.set("b", "2");
+        redis.hset("h", "f", "3");
+
+        RedisBatcher<String, String> batcher = client.batcher(async, 3, 1, TimeUnit.SECONDS);
+        Future<String> a = batcher.get("a");
+        Future<String> c = batcher.get("c");
+        Future<String> f = batcher.hget("h", "f");
+        assertEquals("1", a.get(1, TimeUnit.SECONDS));
+        assertNull(c.get(1, TimeUnit.SECONDS));
+        assertEquals("3", f.get(1, TimeUnit.SECONDS));
+
+        batcher = client.batcher(async, 100, 10, TimeUnit.MILLISECONDS);
+        Future<String> b = batcher.get("b");
+        Future<String> g = batcher.hget("h", "g");
+        assertEquals("2", b.get(1, TimeUnit.SECONDS));
+        assertNull(g.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void combiner() throws Exception {
+        RedisWriteCombiner<String, String> combiner = client.combiner(async, 100, 1, TimeUnit.SECONDS);
+        Future<Long> one = combiner.incrby("counter", 1);
+        Future<Long> two = combiner.incrby("counter", 2);
+        Future<Long> field = combiner.hincrby("h", "f", 5);
+        Future<String> set = combiner.set(key, "a");
+        combiner.set(key, value);
+
+        assertFalse(one.isDone());
+        assertTrue(combiner.close());
+        assertEquals(3L, (long) one.get(1, TimeUnit.SECONDS));
+        assertEquals(3L, (long) two.get(1, TimeUnit.SECONDS));
+        assertEquals(5L, (long) field.get(1, TimeUnit.SECONDS));
+        assertEquals("OK", set.get(1, TimeUnit.SECONDS));
+        assertEquals(value, redis.get(key));
+        assertEquals("3", redis.get("counter"));
+    }
+
+    @Test
+    public void combinerFlushesOnKindChange() throws Exception {
+        RedisWriteCombiner<String, String> combiner = client.combiner(async, 100, 1, TimeUnit.SECONDS);
+        Future<Long> incr = combiner.incrby(key, 1);
+        Future<String> set = combiner.set(key, "10");
+        assertEquals(1L, (long) incr.get(1, TimeUnit.SECONDS));
+        assertTrue(combiner.close());
+        assertEquals("OK", set.get(1, TimeUnit.SECONDS));
+        assertEquals("10", redis.get(key));
+    }
+
+    @Test
+    public void singleFlightKeepsWriteOrder() throws Exception {
+        redis.set(key, "1");
+        async.setSingleFlight(true);
+        Future<String> before = async.get(key);
+        Future<String> set = async.set(key, "2");
+        Future<String> after = async.get(key);
+        assertEquals("1", before.get(1, TimeUnit.SECONDS));
+        assertEquals("OK", set.get(1, TimeUnit.SECONDS));
+        assertEquals("2", after.get(1, TimeUnit.SECONDS));
+    }
+
     @Test
     public void awaitAll() throws Exception {
         Future<String> get1 = async.get(key);
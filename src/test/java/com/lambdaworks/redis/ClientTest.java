@@ -2,13 +2,24 @@
 
 package com.lambdaworks.redis;
 
+import com.lambdaworks.redis.protocol.HotStandby;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 public class ClientTest extends AbstractCommandTest {
     @Rule
@@ -41,6 +52,74 @@ public class ClientTest extends AbstractCommandTest {
         assertEquals(value, redis.get(key));
     }
 
+    @Test
+    public void reconnectToStandby() throws Exception {
+        RedisClient client = new RedisClient(host, port);
+        client.setHotStandby(10, TimeUnit.MILLISECONDS);
+        RedisConnection<String, String> redis = client.connect();
+        redis.set(key, value);
+
+        HotStandby<?, ?> standby = redis.c.watchdog.getStandby();
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!standby.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        assertTrue(standby.isReady());
+
+        redis.quit();
+        assertEquals(value, redis.get(key));
+        client.shutdown();
+    }
+
+    @Test
+    public void heartbeat() throws Exception {
+        PingServer server = new PingServer();
+        RedisClient client = new RedisClient("127.0.0.1", server.port);
+        try {
+            client.setHeartbeat(20, 20, 100, TimeUnit.MILLISECONDS);
+            RedisConnection<String, String> redis = client.connect();
+            assertEquals("OK", redis.set(key, value));
+
+            server.silent = true;
+            assertTrue(server.awaitReconnect(5000));
+
+            server.silent = false;
+            assertEquals("OK", redis.set(key, value));
+        } finally {
+            client.shutdown();
+            server.close();
+        }
+    }
+
+    @Test
+    public void connectFuture() throws Exception {
+        RedisClient client = new RedisClient(host, port);
+        RedisAsyncConnection<String, String> async = client.connectFuture().get(1, TimeUnit.SECONDS);
+        assertEquals("PONG", async.ping().get());
+        client.shutdown();
+    }
+
+    @Test
+    public void lazyConnect() throws Exception {
+        RedisClient client = new RedisClient(host, port);
+        client.setLazyConnect(true);
+        RedisConnection<String, String> redis = client.connect();
+        redis.set(key, value);
+        assertEquals(value, redis.get(key));
+        client.shutdown();
+    }
+
+    @Test
+    public void unixSocket() throws Exception {
+        File socket = new File("/tmp/redis.sock");
+        assumeTrue(socket.exists() && Epoll.isAvailable());
+        RedisClient client = new RedisClient(socket);
+        RedisConnection<String, String> redis = client.connect();
+        redis.set(key, value);
+        assertEquals(value, redis.get(key));
+        client.shutdown();
+    }
+
     @Test(expected = RedisCommandInterruptedException.class, timeout = 10)
     public void interrupt() throws Exception {
         Thread.currentThread().interrupt();
@@ -62,4 +141,141 @@ public class ClientTest extends AbstractCommandTest {
         exception.expectMessage("Unable to connect");
         client.connectPubSub();
     }
+
+    @Test
+    public void sharedResources() throws Exception {
+        ClientResources resources = new ClientResources(1, 1);
+        RedisClient a = new RedisClient(host, port, resources);
+        RedisClient b = new RedisClient(host, port, resources);
+        RedisAsyncConnection<String, String> one = a.connectAsync();
+        RedisAsyncConnection<String, String> two = b.connectAsync();
+
+        assertSame(one.channel.eventLoop(), two.channel.eventLoop());
+        assertSame(one.executor, two.executor);
+        assertEquals("PONG", one.ping().get(1, TimeUnit.SECONDS));
+
+        a.shutdown();
+        assertFalse(resources.eventLoopGroup().isShuttingDown());
+        assertEquals("PONG", two.ping().get(1, TimeUnit.SECONDS));
+
+        b.shutdown();
+        resources.shutdown();
+        assertTrue(resources.eventLoopGroup().isShuttingDown());
+    }
+
+    @Test
+    public void defaultExecutor() throws Exception {
+        RedisAsyncConnection<String, String> async = client.connectAsync();
+        assertNull(async.executor);
+        assertEquals("PONG", async.ping().get(1, TimeUnit.SECONDS));
+        async.close();
+    }
+
+    @Test
+    public void socketOptions() throws Exception {
+        RedisClient client = new RedisClient(host, port);
+        client.setTcpNoDelay(true);
+        client.setKeepAlive(true);
+        client.setSendBufferSize(65536);
+        client.setReceiveBufferSize(65536);
+
+        ChannelConfig config = client.connectAsync().channel.config();
+        assertTrue(config.getOption(ChannelOption.TCP_NODELAY));
+        assertTrue(config.getOption(ChannelOption.SO_KEEPALIVE));
+        assertTrue(config.getOption(ChannelOption.SO_SNDBUF) >= 65536);
+        assertTrue(config.getOption(ChannelOption.SO_RCVBUF) >= 65536);
+        client.shutdown();
+    }
+
+    /**
+     * A server that answers PING with PONG and any other command with OK. A
+     * connection that receives a PING while the server is silent hangs and
+     * answers nothing more, like a half-open connection.
+     */
+    private static class PingServer implements Runnable {
+        private ServerSocket server;
+        private int port;
+        private List<Socket> accepted;
+        private int closed;
+        private volatile boolean silent;
+
+        PingServer() throws IOException {
+            this.server   = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            this.port     = server.getLocalPort();
+            this.accepted = new ArrayList<Socket>();
+            start(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Socket socket = server.accept();
+                    synchronized (this) {
+                        accepted.add(socket);
+                    }
+                    start(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+
+        /**
+         * Wait until a connection has been closed by the client and a new one
+         * has been opened.
+         */
+        synchronized boolean awaitReconnect(long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while ((closed == 0 || accepted.size() < 2) && System.currentTimeMillis() < deadline) {
+                wait(10);
+            }
+            return closed > 0 && accepted.size() >= 2;
+        }
+
+        synchronized void close() throws IOException {
+            server.close();
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                OutputStream out = socket.getOutputStream();
+                boolean hung = false;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = null;
+                    for (int i = Integer.parseInt(line.substring(1)); i > 0; i--) {
+                        in.readLine();
+                        String arg = in.readLine();
+                        if (command == null) command = arg;
+                    }
+                    hung |= silent && "PING".equalsIgnoreCase(command);
+                    if (hung) continue;
+                    out.write(("PING".equalsIgnoreCase(command) ? "+PONG\r\n" : "+OK\r\n").getBytes("UTF-8"));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // closed
+            }
+            synchronized (this) {
+                closed++;
+                notifyAll();
+            }
+        }
+
+        private static void start(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
 }
@@ -4,14 +4,23 @@ package com.lambdaworks.redis;
 
 import com.lambdaworks.redis.codec.RedisCodec;
 import com.lambdaworks.redis.codec.Utf8StringCodec;
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.DeferredFuture;
+import com.lambdaworks.redis.concurrent.FailCallback;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
 import com.lambdaworks.redis.output.NestedMultiOutput;
 import com.lambdaworks.redis.output.StatusOutput;
+import com.lambdaworks.redis.output.ValueListOutput;
+import com.lambdaworks.redis.output.ValueOutput;
 import com.lambdaworks.redis.protocol.*;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
 
 import static com.lambdaworks.redis.protocol.Charsets.buffer;
 import static junit.framework.Assert.*;
@@ -34,6 +43,19 @@ public class CommandInternalsTest {
         assertFalse(command.cancel(true));
     }
 
+    @Test
+    public void cancelFailsCallbacks() throws Exception {
+        DeferredFuture<String> future = new DeferredFuture<String>();
+        command.then(new Callback<String>() {
+            @Override
+            public void call(String value) {
+            }
+        }, failure(future));
+        assertTrue(command.cancel(true));
+        command.complete();
+        assertClosed(future, "Command cancelled");
+    }
+
     @Test
     public void isDone() throws Exception {
         assertFalse(command.isDone());
@@ -41,6 +63,17 @@ public class CommandInternalsTest {
         assertTrue(command.isDone());
     }
 
+    @Test
+    public void completeInMulti() throws Exception {
+        Command<String, String, String> cmd = new Command<String, String, String>(CommandType.GET, new StatusOutput<String, String>(codec), null, true);
+        cmd.complete();
+        assertFalse(cmd.isDone());
+        assertTrue(cmd.isPending());
+        cmd.getOutput().set(buffer("one"));
+        cmd.complete();
+        assertEquals("one", cmd.get());
+    }
+
     @Test
     public void get() throws Exception {
         command.getOutput().set(buffer("one"));
@@ -120,4 +153,253 @@ public class CommandInternalsTest {
         assertNotNull(new SortArgs.Builder());
         assertNotNull(new Charsets());
     }
+
+    @Test
+    public void keys() throws Exception {
+        CommandArgs<String, String> args = new CommandArgs<String, String>(codec);
+        assertNull(args.firstKey());
+        args.addKey("key").addField("field").addValue("value").addKeys("a", "b");
+        assertEquals(3, args.keys().size());
+        assertEquals("key", new String(args.firstKey(), "UTF-8"));
+        assertEquals("b", new String(args.keys().get(2), "UTF-8"));
+    }
+
+    @Test
+    public void chunks() throws Exception {
+        CommandChunks<String, String> chunks = new CommandChunks<String, String>(codec, "key", 5, 0);
+        for (int i = 0; i < 5; i++) {
+            chunks.next(2).addField("f" + i).addValue("v" + i);
+        }
+        List<CommandArgs<String, String>> list = chunks.list();
+        assertEquals(3, list.size());
+        assertEquals(5, list.get(0).count());
+        assertEquals(3, list.get(2).count());
+        assertEquals("key", new String(list.get(2).firstKey(), "UTF-8"));
+
+        chunks = new CommandChunks<String, String>(codec, "key", 0, 1);
+        chunks.next(1).addValue("a");
+        chunks.next(1).addValue("b");
+        assertEquals(2, chunks.list().size());
+        assertEquals(1, new CommandChunks<String, String>(codec, "key", 5, 0).list().size());
+    }
+
+    @Test
+    public void singleFlight() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<String, String>(null);
+        Command<String, String, String> leader = get("key");
+        Command<String, String, String> follower = get("key");
+        Command<String, String, String> other = get("other");
+
+        assertFalse(flights.join(leader));
+        assertTrue(flights.join(follower));
+        assertFalse(flights.join(other));
+        assertEquals(2, flights.size());
+
+        leader.getOutput().set(buffer("value"));
+        leader.complete();
+        assertTrue(follower.await(1, TimeUnit.SECONDS));
+        assertEquals("value", follower.get());
+        assertEquals(1, flights.size());
+
+        CommandArgs<String, String> args = new CommandArgs<String, String>(codec).addKey("key");
+        assertFalse(flights.join(new Command<String, String, String>(CommandType.RANDOMKEY, new ValueOutput<String, String>(codec), args, false)));
+    }
+
+    @Test
+    public void singleFlightEndsAtWrite() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<String, String>(null);
+        CommandArgs<String, String> args = new CommandArgs<String, String>(codec).addKey("key").addValue("value");
+        Command<String, String, String> set = new Command<String, String, String>(CommandType.SET, new StatusOutput<String, String>(codec), args, false);
+
+        assertFalse(flights.join(get("key")));
+        assertFalse(flights.join(set));
+        assertEquals(0, flights.size());
+        assertFalse(flights.join(get("key")));
+        assertTrue(flights.join(get("key")));
+    }
+
+    @Test
+    public void singleFlightCopiesCollections() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<String, String>(null);
+        Command<String, String, List<String>> leader = lrange("key");
+        Command<String, String, List<String>> follower = lrange("key");
+
+        assertFalse(flights.join(leader));
+        assertTrue(flights.join(follower));
+
+        leader.getOutput().set(buffer("a"));
+        leader.complete();
+        assertTrue(follower.await(1, TimeUnit.SECONDS));
+        assertEquals(leader.get(), follower.get());
+        assertNotSame(leader.get(), follower.get());
+    }
+
+    @Test
+    public void singleFlightResendsWhenCancelled() throws Exception {
+        final BlockingQueue<Command<String, String, ?>> sent = new LinkedBlockingQueue<Command<String, String, ?>>();
+        BlockingQueue<Command<String, String, ?>> queue = new LinkedBlockingQueue<Command<String, String, ?>>();
+        RedisAsyncConnection<String, String> connection = new RedisAsyncConnection<String, String>(queue, codec, 1, TimeUnit.SECONDS) {
+            @Override
+            public <T> Command<String, String, T> dispatch(Command<String, String, T> cmd) {
+                sent.add(cmd);
+                return cmd;
+            }
+        };
+        SingleFlight<String, String> flights = new SingleFlight<String, String>(connection);
+        Command<String, String, String> leader = get("key");
+        Command<String, String, String> follower = get("key");
+
+        assertFalse(flights.join(leader));
+        assertTrue(flights.join(follower));
+        leader.cancel(true);
+
+        assertSame(follower, sent.poll(1, TimeUnit.SECONDS));
+        assertFalse(follower.isDone());
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    public void singleFlightFailsWhenCancelledAfterWrite() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<String, String>(closed());
+        Command<String, String, String> leader = get("key");
+        Command<String, String, String> follower = get("key");
+
+        assertFalse(flights.join(leader));
+        assertTrue(flights.join(follower));
+        flights.clear();
+        leader.cancel(true);
+
+        assertTrue(follower.await(1, TimeUnit.SECONDS));
+        assertEquals("Command cancelled", follower.getOutput().getError());
+    }
+
+    @Test
+    public void batcherFailsWhenDispatchThrows() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RedisBatcher<String, String> batcher = new RedisBatcher<String, String>(closed(), scheduler, 100, 1, TimeUnit.MILLISECONDS);
+            Future<String> a = batcher.get("a");
+            Future<String> b = batcher.get("b");
+            assertClosed(a);
+            assertClosed(b);
+
+            batcher = new RedisBatcher<String, String>(closed(), scheduler, 1, 1, TimeUnit.HOURS);
+            assertClosed(batcher.hget("h", "f"));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void combinerFailsWhenDispatchThrows() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RedisWriteCombiner<String, String> combiner = new RedisWriteCombiner<String, String>(closed(), scheduler, 100, 1, TimeUnit.MILLISECONDS);
+            Future<Long> one = combiner.incrby("counter", 1);
+            Future<Long> two = combiner.incrby("counter", 2);
+            Future<String> set = combiner.set("key", "value");
+            assertClosed(one);
+            assertClosed(two);
+            assertClosed(set);
+
+            Future<Long> three = combiner.incrby("counter", 3);
+            assertNotSame(one, three);
+            assertTrue(combiner.close());
+            assertClosed(three);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void pageIteratorOverDeferredFutures() throws Exception {
+        List<String> values = new ArrayList<String>();
+        for (Iterator<String> i = pages(Arrays.asList("a", "b", "c"), null); i.hasNext(); ) {
+            values.add(i.next());
+        }
+        assertEquals(Arrays.asList("a", "b", "c"), values);
+    }
+
+    @Test
+    public void pageIteratorFailure() throws Exception {
+        Iterator<String> i = pages(Arrays.asList("a", "b", "c"), "ERR failed");
+        assertEquals("a", i.next());
+        assertEquals("b", i.next());
+        try {
+            i.hasNext();
+            fail("iterator did not fail");
+        } catch (RedisException e) {
+            assertEquals("ERR failed", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangeIteratorPageSize() throws Exception {
+        new RangeIterator<String, String, String>(0, 1, TimeUnit.SECONDS) {
+            @Override
+            protected ListenableFuture<List<String>> range(List<String> previous) {
+                return null;
+            }
+        };
+    }
+
+    private Iterator<String> pages(final List<String> values, final String error) {
+        return new RangeIterator<String, String, String>(2, 1, TimeUnit.SECONDS) {
+            private int start;
+
+            @Override
+            protected ListenableFuture<List<String>> range(List<String> previous) {
+                if (previous != null) start += previous.size();
+                DeferredFuture<List<String>> page = new DeferredFuture<List<String>>();
+                if (start > 0 && error != null) {
+                    page.failure(error);
+                } else {
+                    page.resolve(values.subList(start, Math.min(start + pageSize, values.size())));
+                }
+                return page;
+            }
+        };
+    }
+
+    private RedisAsyncConnection<String, String> closed() {
+        BlockingQueue<Command<String, String, ?>> queue = new LinkedBlockingQueue<Command<String, String, ?>>();
+        return new RedisAsyncConnection<String, String>(queue, codec, 1, TimeUnit.SECONDS) {
+            @Override
+            public <T> Command<String, String, T> dispatch(Command<String, String, T> cmd) {
+                throw new RedisException("Connection is closed");
+            }
+        };
+    }
+
+    private void assertClosed(Future<?> future) throws Exception {
+        assertClosed(future, "Connection is closed");
+    }
+
+    private void assertClosed(Future<?> future, String error) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("future completed without error");
+        } catch (ExecutionException e) {
+            assertEquals(error, e.getCause().getMessage());
+        }
+    }
+
+    private FailCallback failure(final DeferredFuture<?> future) {
+        return new FailCallback() {
+            @Override
+            public void fail(String error) {
+                future.failure(error);
+            }
+        };
+    }
+
+    private Command<String, String, List<String>> lrange(String key) {
+        CommandArgs<String, String> args = new CommandArgs<String, String>(codec).addKey(key).add(0).add(-1);
+        return new Command<String, String, List<String>>(CommandType.LRANGE, new ValueListOutput<String, String>(codec), args, false);
+    }
+
+    private Command<String, String, String> get(String key) {
+        CommandArgs<String, String> args = new CommandArgs<String, String>(codec).addKey(key);
+        return new Command<String, String, String>(CommandType.GET, new ValueOutput<String, String>(codec), args, false);
+    }
 }
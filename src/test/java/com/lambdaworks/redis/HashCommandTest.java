@@ -5,6 +5,7 @@ package com.lambdaworks.redis;
 import org.junit.Test;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -97,6 +98,31 @@ public class HashCommandTest extends AbstractCommandTest {
         assertEquals(list("1", "2"), redis.hmget(key, "one", "two"));
     }
 
+    @Test
+    public void hmsetChunked() throws Exception {
+        redis.setChunking(3, 0);
+        Map<String, String> hash = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 10; i++) {
+            hash.put("field" + i, "value" + i);
+        }
+        assertEquals("OK", redis.hmset(key, hash));
+        assertEquals(hash, redis.hgetall(key));
+    }
+
+    @Test
+    public void hscan() throws Exception {
+        redis.hset(key, "one", "1");
+        redis.hset(key, "two", "2");
+        Map<String, String> map = new HashMap<String, String>();
+        ScanIterator<String, String, KeyValue<String, String>> iterator = redis.hscanIterator(key, null, 1);
+        while (iterator.hasNext()) {
+            KeyValue<String, String> kv = iterator.next();
+            map.put(kv.key, kv.value);
+        }
+        assertEquals(2, map.size());
+        assertEquals("2", map.get("two"));
+    }
+
     @Test
     public void hset() throws Exception {
         assertEquals(true, redis.hset(key, "one", "1"));
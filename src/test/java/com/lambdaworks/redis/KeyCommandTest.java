@@ -2,14 +2,18 @@
 
 package com.lambdaworks.redis;
 
+import com.lambdaworks.redis.concurrent.Callback;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -26,6 +30,14 @@ public class KeyCommandTest extends AbstractCommandTest {
         assertEquals(2, (long) redis.del(key + "1", key + "2"));
     }
 
+    @Test
+    public void delIfEquals() throws Exception {
+        redis.set(key, value);
+        assertFalse(redis.delIfEquals(key, "other"));
+        assertTrue(redis.delIfEquals(key, value));
+        assertNull(redis.get(key));
+    }
+
     @Test
     public void dump() throws Exception {
         assertNull(redis.dump("invalid"));
@@ -201,6 +213,35 @@ public class KeyCommandTest extends AbstractCommandTest {
         assertTrue(ttl <= 1000 && ttl >= 0);
     }
 
+    @Test
+    public void scan() throws Exception {
+        redis.set("a1", value);
+        redis.set("a2", value);
+        redis.set("b1", value);
+        Set<String> keys = new HashSet<String>();
+        ScanIterator<String, String, String> iterator = redis.scanIterator("a*", 1);
+        while (iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        assertEquals(new HashSet<String>(list("a1", "a2")), keys);
+    }
+
+    @Test
+    public void scanStream() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            redis.set(key + i, value);
+        }
+        final Set<String> keys = Collections.synchronizedSet(new HashSet<String>());
+        long count = redis.scanIterator(null, 10).stream(new Callback<String>() {
+            @Override
+            public void call(String key) {
+                keys.add(key);
+            }
+        }).get();
+        assertTrue(count >= 100);
+        assertEquals(100, keys.size());
+    }
+
     @Test
     public void ttl() throws Exception {
         assertEquals(-2, (long) redis.ttl(key));
@@ -0,0 +1,96 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+import com.lambdaworks.redis.concurrent.Callback;
+import com.lambdaworks.redis.concurrent.DeferredFuture;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+import com.lambdaworks.redis.output.ValueListOutput;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandArgs;
+import com.lambdaworks.redis.protocol.CommandType;
+import org.junit.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.lambdaworks.redis.RedisLaneConnection.Lane.*;
+import static com.lambdaworks.redis.protocol.Charsets.buffer;
+import static com.lambdaworks.redis.protocol.CommandType.*;
+import static org.junit.Assert.*;
+
+public class LaneConnectionTest extends AbstractCommandTest {
+    private RedisLaneConnection<String, String> lanes;
+
+    @Before
+    public void openLaneConnection() throws Exception {
+        lanes = client.connectLanes(new Utf8StringCodec());
+        lanes.setBulkThreshold(3);
+    }
+
+    @After
+    public void closeLaneConnection() throws Exception {
+        lanes.close();
+    }
+
+    @Test
+    public void routeByType() throws Exception {
+        assertSame(lanes.lane(BULK), lanes.route(command(HGETALL, key)));
+        assertSame(lanes.lane(LATENCY), lanes.route(command(GET, key)));
+        assertSame(lanes.lane(BULK), lanes.route(command(MGET, "a", "b", "c")));
+        assertSame(lanes.lane(BULK), lanes.route(command(LRANGE, key)));
+        assertSame(lanes.lane(BULK), lanes.route(command(ZRANGE, key)));
+        assertSame(lanes.lane(BULK), lanes.route(command(ZRANGEBYSCORE, key)));
+    }
+
+    @Test
+    public void routeByReplySize() throws Exception {
+        redis.zadd(key, 1.0, "1", 2.0, "2", 3.0, "3");
+        assertEquals(list("3", "2", "1"), awaitCallbacks(lanes.zrevrange(key, 0, -1)));
+        assertSame(lanes.lane(BULK), lanes.route(command(ZREVRANGE, key)));
+        assertEquals(list("3"), awaitCallbacks(lanes.zrevrange(key, 0, 0)));
+        assertSame(lanes.lane(LATENCY), lanes.route(command(ZREVRANGE, key)));
+    }
+
+    @Test
+    public void routeDoesNotRecord() throws Exception {
+        Command<String, String, List<String>> cmd = command(ZREVRANGE, key);
+        lanes.route(cmd);
+        lanes.route(cmd);
+        for (String value : list("1", "2", "3")) {
+            cmd.getOutput().set(buffer(value));
+        }
+        cmd.complete();
+        assertEquals(list("1", "2", "3"), awaitCallbacks(cmd));
+        assertSame(lanes.lane(LATENCY), lanes.route(command(ZREVRANGE, key)));
+    }
+
+    @Test
+    public void commands() throws Exception {
+        assertEquals("OK", lanes.set(key, value).get());
+        assertEquals(value, lanes.get(key).get());
+        redis.hset("hash", key, value);
+        assertEquals(1, lanes.hgetall("hash").get().size());
+    }
+
+    /**
+     * Wait for a future and the callbacks registered on it before this call,
+     * which run in order once it completes.
+     */
+    private <T> T awaitCallbacks(ListenableFuture<T> future) throws Exception {
+        final DeferredFuture<T> done = new DeferredFuture<T>();
+        future.then(new Callback<T>() {
+            @Override
+            public void call(T value) {
+                done.resolve(value);
+            }
+        });
+        return done.get(1, TimeUnit.SECONDS);
+    }
+
+    private Command<String, String, List<String>> command(CommandType type, String... keys) {
+        CommandArgs<String, String> args = new CommandArgs<String, String>(new Utf8StringCodec()).addKeys(keys);
+        return new Command<String, String, List<String>>(type, new ValueListOutput<String, String>(new Utf8StringCodec()), args, false);
+    }
+}
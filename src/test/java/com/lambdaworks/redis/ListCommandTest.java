@@ -4,6 +4,7 @@ package com.lambdaworks.redis;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -82,6 +83,18 @@ public class ListCommandTest extends AbstractCommandTest {
         assertEquals(list("four", "three", "one", "two"), redis.lrange(key, 0, -1));
     }
 
+    @Test
+    public void lpushTrim() throws Exception {
+        assertEquals(2, (long) redis.lpushTrim(key, 3, "one", "two"));
+        assertEquals(3, (long) redis.lpushTrim(key, 3, "three", "four"));
+        assertEquals(list("four", "three", "two"), redis.lrange(key, 0, -1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lpushTrimZero() throws Exception {
+        redis.lpushTrim(key, 0, "one");
+    }
+
     @Test
     public void lpushx() throws Exception {
         assertEquals(0, (long) redis.lpushx(key, "two"));
@@ -101,6 +114,17 @@ public class ListCommandTest extends AbstractCommandTest {
         assertEquals(3, redis.lrange(key, 0, -1).size());
     }
 
+    @Test
+    public void lrangeIterator() throws Exception {
+        redis.rpush(key, "1", "2", "3", "4", "5");
+        List<String> values = new ArrayList<String>();
+        RangeIterator<String, String, String> iterator = redis.lrangeIterator(key, 2);
+        while (iterator.hasNext()) {
+            values.add(iterator.next());
+        }
+        assertEquals(list("1", "2", "3", "4", "5"), values);
+    }
+
     @Test
     public void lrem() throws Exception {
         assertEquals(0, (long) redis.lrem(key, 0, value));
@@ -161,6 +185,14 @@ public class ListCommandTest extends AbstractCommandTest {
         assertEquals(list("one", "two", "three", "four"), redis.lrange(key, 0, -1));
     }
 
+    @Test
+    public void rpushChunked() throws Exception {
+        redis.setChunking(0, 16);
+        assertEquals(1, (long) redis.rpush(key, "one"));
+        assertEquals(5, (long) redis.rpush(key, "two", "three", "four", "five"));
+        assertEquals(list("one", "two", "three", "four", "five"), redis.lrange(key, 0, -1));
+    }
+
     @Test
     public void rpushx() throws Exception {
         assertEquals(0, (long) redis.rpushx(key, "one"));
@@ -0,0 +1,117 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import com.lambdaworks.redis.pubsub.RedisPubSubConnection;
+import org.junit.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class NearCacheTest extends AbstractCommandTest {
+    private RedisAsyncConnection<String, String> async;
+    private RedisPubSubConnection<String, String> pubsub;
+    private RedisNearCache<String, String> cache;
+
+    @Before
+    public void openNearCache() throws Exception {
+        redis.configSet("notify-keyspace-events", "KA");
+        async  = client.connectAsync();
+        pubsub = client.connectPubSub();
+        cache  = new RedisNearCache<String, String>(async, pubsub, 2, 1, TimeUnit.MINUTES);
+
+        redis.set(key, value);
+        long deadline = System.currentTimeMillis() + 1000;
+        while (cache.size() == 0 && System.currentTimeMillis() < deadline) {
+            assertEquals(value, cache.get(key).get());
+            Thread.sleep(10);
+        }
+        assertEquals(1, cache.size());
+    }
+
+    @After
+    public void closeNearCache() throws Exception {
+        cache.close();
+        pubsub.close();
+        async.close();
+        redis.configSet("notify-keyspace-events", "");
+    }
+
+    @Test
+    public void get() throws Exception {
+        long hits = cache.getHits();
+        assertEquals(value, cache.get(key).get());
+        assertEquals(hits + 1, cache.getHits());
+    }
+
+    @Test
+    public void invalidateOnWrite() throws Exception {
+        redis.set(key, value + "X");
+        long deadline = System.currentTimeMillis() + 1000;
+        while (cache.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(value + "X", cache.get(key).get());
+    }
+
+    @Test
+    public void hashes() throws Exception {
+        redis.hset("h", "f", "1");
+        long deadline = System.currentTimeMillis() + 1000;
+        long hits;
+        do {
+            Map<String, String> hash = cache.hgetall("h").get();
+            assertEquals("1", hash.get("f"));
+            hits = cache.getHits();
+            assertEquals("1", cache.hget("h", "f").get());
+        } while (cache.getHits() == hits && sleep(deadline));
+        assertEquals(hits + 1, cache.getHits());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        redis.set("a", "1");
+        redis.set("b", "2");
+        awaitCached("a", "b");
+        assertEquals(2, cache.size());
+        long misses = cache.getMisses();
+        assertEquals(value, cache.get(key).get());
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    @Test
+    public void expireWithKey() throws Exception {
+        redis.set("temp", value);
+        redis.pexpire("temp", 100);
+        assertEquals(value, cache.get("temp").get());
+        long deadline = System.currentTimeMillis() + 1000;
+        while (cache.get("temp").get() != null && sleep(deadline)) {
+            // wait for the key to expire
+        }
+        assertNull(cache.get("temp").get());
+    }
+
+    /**
+     * Read keys until every read is answered from the cache, once the
+     * notifications of earlier writes have been received.
+     */
+    private void awaitCached(String... keys) throws Exception {
+        long deadline = System.currentTimeMillis() + 1000;
+        long hits;
+        do {
+            hits = cache.getHits();
+            for (String k : keys) {
+                cache.get(k).get();
+            }
+        } while (cache.getHits() < hits + keys.length && sleep(deadline));
+        assertEquals(hits + keys.length, cache.getHits());
+    }
+
+    private static boolean sleep(long deadline) throws InterruptedException {
+        if (System.currentTimeMillis() >= deadline) return false;
+        Thread.sleep(10);
+        return true;
+    }
+}
@@ -31,6 +31,14 @@ public class NumericCommandTest extends AbstractCommandTest {
         assertEquals(6, (long) redis.incrby(key, 3));
     }
 
+    @Test
+    public void incrbyExpire() throws Exception {
+        assertEquals(3, (long) redis.incrbyExpire(key, 3, 10));
+        assertTrue(redis.ttl(key) > 0);
+        assertEquals(6, (long) redis.incrbyExpire(key, 3, 20));
+        assertTrue(redis.ttl(key) <= 10);
+    }
+
     @Test
     public void incrbyfloat() throws Exception {
         assertEquals(3.0, redis.incrbyfloat(key, 3.0), 0.1);
@@ -0,0 +1,65 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ScoredValueMergeIteratorTest extends AbstractCommandTest {
+    protected RedisAsyncConnection<String, String> db1;
+    protected RedisAsyncConnection<String, String> db2;
+
+    @Before
+    public final void openPartitions() throws Exception {
+        db1 = client.connectAsync();
+        db2 = client.connectAsync();
+        db1.select(1);
+        db2.select(2);
+        db1.zadd(key, 1.0, "a", 4.0, "d", 5.0, "e").get();
+        db2.zadd(key, 2.0, "b", 3.0, "c", 6.0, "f").get();
+    }
+
+    @After
+    public final void closePartitions() throws Exception {
+        db1.close();
+        db2.close();
+    }
+
+    @Test
+    public void rank() throws Exception {
+        ScoredValueMergeIterator<String, String> iterator = iterator(null, null, false);
+        assertEquals(svlist(sv(1.0, "a"), sv(2.0, "b"), sv(3.0, "c"), sv(4.0, "d"), sv(5.0, "e"), sv(6.0, "f")), iterator.next(10));
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void reverse() throws Exception {
+        ScoredValueMergeIterator<String, String> iterator = iterator(null, null, true);
+        assertEquals(svlist(sv(6.0, "f"), sv(5.0, "e"), sv(4.0, "d")), iterator.next(3));
+        assertTrue(iterator.hasNext());
+    }
+
+    @Test
+    public void score() throws Exception {
+        ScoredValueMergeIterator<String, String> iterator = iterator("(1", "5", false);
+        List<ScoredValue<String>> list = iterator.next(10);
+        assertEquals(svlist(sv(2.0, "b"), sv(3.0, "c"), sv(4.0, "d"), sv(5.0, "e")), list);
+    }
+
+    protected ScoredValueMergeIterator<String, String> iterator(String min, String max, boolean reverse) {
+        List<RedisAsyncConnection<String, String>> connections = list(db1, db2);
+        return new ScoredValueMergeIterator<String, String>(connections, key, min, max, reverse, 2, 10, TimeUnit.SECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected List<RedisAsyncConnection<String, String>> list(RedisAsyncConnection<String, String>... connections) {
+        return Arrays.asList(connections);
+    }
+}
@@ -48,6 +48,16 @@ public class ScriptingCommandTest extends AbstractCommandTest {
         redis.evalsha(redis.digest("return 1 + 1 == 4"), INTEGER);
     }
 
+    @Test
+    public void scriptHandle() throws Exception {
+        redis.scriptFlush();
+        RedisScript<String, String> script = redis.script("return {KEYS[1], ARGV[1]}", MULTI);
+        assertEquals(redis.digest("return {KEYS[1], ARGV[1]}"), script.getDigest());
+        assertEquals(list("one", "a"), redis.evalsha(script, new String[] { "one" }, "a"));
+        assertEquals(list(true), redis.scriptExists(script.getDigest()));
+        assertEquals(list("two", "b"), script.eval(new String[] { "two" }, "b").get());
+    }
+
     @Test
     public void evalshaWithKeys() throws Exception {
         redis.scriptFlush();
@@ -63,6 +73,12 @@ public class ScriptingCommandTest extends AbstractCommandTest {
         assertEquals(list("a", "b"), redis.evalsha(digest, MULTI, keys, "a", "b"));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void fusedScriptsLoaded() throws Exception {
+        assertEquals(list(true, true), redis.scriptExists(FusedScript.GET_OR_SETEX.digest, FusedScript.INCRBY_EXPIRE.digest));
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void script() throws Exception {
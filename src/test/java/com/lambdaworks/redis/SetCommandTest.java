@@ -17,6 +17,14 @@ public class SetCommandTest extends AbstractCommandTest {
         assertEquals(set("a", "b", "c"), redis.smembers(key));
     }
 
+    @Test
+    public void saddChunked() throws Exception {
+        redis.setChunking(3, 0);
+        assertEquals(1, (long) redis.sadd(key, "a"));
+        assertEquals(4, (long) redis.sadd(key, "a", "b", "c", "d", "e", "b"));
+        assertEquals(set("a", "b", "c", "d", "e"), redis.smembers(key));
+    }
+
     @Test
     public void scard() throws Exception {
         assertEquals(0, (long) redis.scard(key));
@@ -111,6 +119,14 @@ public class SetCommandTest extends AbstractCommandTest {
         assertEquals(set(), redis.smembers(key));
     }
 
+    @Test
+    public void sscan() throws Exception {
+        redis.sadd(key, "a", "b", "c");
+        ScanResult<String> result = redis.sscan(key, ScanResult.INITIAL_CURSOR, "a", 10);
+        assertTrue(result.isFinished());
+        assertEquals(list("a"), result.getValues());
+    }
+
     @Test
     public void sunion() throws Exception {
         redis.sadd("key1", "a", "b", "c", "d");
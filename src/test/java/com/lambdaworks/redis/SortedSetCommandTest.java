@@ -4,6 +4,9 @@ package com.lambdaworks.redis;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static com.lambdaworks.redis.ZStoreArgs.Builder.*;
 import static java.lang.Double.NEGATIVE_INFINITY;
 import static java.lang.Double.POSITIVE_INFINITY;
@@ -82,6 +85,17 @@ public class SortedSetCommandTest extends AbstractCommandTest {
         assertEquals(list("c", "d"), redis.zrangebyscore(key, "-inf", "+inf", 2, 2));
     }
 
+    @Test
+    public void zrangebyscoreIterator() throws Exception {
+        redis.zadd(key, 1.0, "a", 2.0, "b", 2.0, "c", 2.0, "d", 3.0, "e", 4.0, "f");
+        List<ScoredValue<String>> values = new ArrayList<ScoredValue<String>>();
+        RangeIterator<String, String, ScoredValue<String>> iterator = redis.zrangebyscoreIterator(key, "-inf", "(4", 2);
+        while (iterator.hasNext()) {
+            values.add(iterator.next());
+        }
+        assertEquals(svlist(sv(1.0, "a"), sv(2.0, "b"), sv(2.0, "c"), sv(2.0, "d"), sv(3.0, "e")), values);
+    }
+
     @Test
     @SuppressWarnings({"unchecked", "varargs"})
     public void zrangebyscoreWithScores() throws Exception {
@@ -178,6 +192,14 @@ public class SortedSetCommandTest extends AbstractCommandTest {
         assertEquals(2, (long) redis.zrevrank(key, "a"));
     }
 
+    @Test
+    public void zscan() throws Exception {
+        redis.zadd(key, 1.0, "a", 2.0, "b");
+        ScanResult<ScoredValue<String>> result = redis.zscan(key, ScanResult.INITIAL_CURSOR);
+        assertTrue(result.isFinished());
+        assertEquals(svlist(sv(1.0, "a"), sv(2.0, "b")), result.getValues());
+    }
+
     @Test
     public void zscore() throws Exception {
         assertNull(redis.zscore(key, "a"));
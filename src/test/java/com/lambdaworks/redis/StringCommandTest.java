@@ -27,6 +27,13 @@ public class StringCommandTest extends AbstractCommandTest {
         assertEquals(value, redis.get(key));
     }
 
+    @Test
+    public void getOrSetex() throws Exception {
+        assertEquals(value, redis.getOrSetex(key, 10, value));
+        assertEquals(value, redis.getOrSetex(key, 10, "other"));
+        assertTrue(redis.ttl(key) > 0);
+    }
+
     @Test
     public void getbit() throws Exception {
         assertEquals(0, (long) redis.getbit(key, 0));
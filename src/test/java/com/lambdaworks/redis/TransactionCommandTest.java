@@ -2,12 +2,17 @@
 
 package com.lambdaworks.redis;
 
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+import com.lambdaworks.redis.concurrent.ListenableFuture;
+import com.lambdaworks.redis.protocol.Command;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -45,6 +50,107 @@ public class TransactionCommandTest extends AbstractCommandTest {
 
     }
 
+    @Test
+    public void transaction() throws Exception {
+        RedisAsyncConnection<String, String> async = client.connectAsync();
+        RedisTransaction<String, String> tx = async.transaction();
+
+        ListenableFuture<String> set = tx.set(key, value);
+        ListenableFuture<Long> rpush = tx.rpush("list", "1", "2");
+        ListenableFuture<String> get = async.get(key);
+
+        assertNull(get.get());
+        assertFalse(set.isDone());
+        assertEquals(list("OK", 2L), tx.exec().get());
+        assertEquals("OK", set.get());
+        assertEquals(2L, (long) rpush.get());
+        assertEquals(value, async.get(key).get());
+        async.close();
+    }
+
+    @Test
+    public void transactionWatch() throws Exception {
+        RedisTransaction<String, String> tx = redis.transaction();
+        assertEquals("OK", tx.watch(key).get());
+        redis.set(key, value + "X");
+        ListenableFuture<Long> append = tx.append(key, "foo");
+        assertNull(tx.exec().get());
+        assertNull(append.get());
+    }
+
+    @Test
+    public void transactionExecAbort() throws Exception {
+        RedisTransaction<String, String> tx = redis.transaction();
+        ListenableFuture<String> set = tx.set(key, value);
+        ListenableFuture<Long> rpush = tx.rpush("list");
+        Command<String, String, List<Object>> exec = tx.exec();
+        assertTrue(exec.await(1, TimeUnit.SECONDS));
+        assertTrue(exec.getOutput().getError().startsWith("EXECABORT"));
+        assertTrue(set.isDone());
+        assertTrue(((Command<?, ?, ?>) set).getOutput().getError().startsWith("EXECABORT"));
+        assertTrue(rpush.isDone());
+        assertTrue(((Command<?, ?, ?>) rpush).getOutput().hasError());
+        assertNull(redis.get(key));
+    }
+
+    @Test
+    public void transactionDiscard() throws Exception {
+        RedisTransaction<String, String> tx = redis.transaction();
+        ListenableFuture<String> set = tx.set(key, value);
+        assertEquals("OK", tx.discard().get());
+        assertTrue(set.isDone());
+        assertEquals(0, tx.size());
+        assertNull(redis.get(key));
+    }
+
+    @Test
+    public void checkAndSet() throws Exception {
+        RedisConnectionPool<String, String> pool = new RedisConnectionPool<String, String>(client, new Utf8StringCodec(), 1);
+        RedisCheckAndSet<String, String> cas = new RedisCheckAndSet<String, String>(pool, 1, TimeUnit.SECONDS);
+        final AtomicInteger runs = new AtomicInteger();
+        redis.set(key, "1");
+
+        List<Object> results = cas.execute(new RedisCheckAndSet.Operation<String, String>() {
+            @Override
+            public void run(RedisConnection<String, String> conn, RedisTransaction<String, String> tx) {
+                int n = Integer.parseInt(conn.get(key));
+                if (runs.incrementAndGet() == 1) redis.set(key, "10");
+                tx.set(key, String.valueOf(n + 1));
+            }
+        }, key);
+
+        assertEquals(list("OK"), results);
+        assertEquals("11", redis.get(key));
+        assertEquals(2, cas.getAttempts());
+        assertEquals(1, cas.getConflicts());
+        assertEquals(1, cas.getCommits());
+        assertEquals(0.5, cas.getConflictRate(), 0);
+        pool.close();
+    }
+
+    @Test
+    public void checkAndSetExecAbort() throws Exception {
+        RedisConnectionPool<String, String> pool = new RedisConnectionPool<String, String>(client, new Utf8StringCodec(), 1);
+        RedisCheckAndSet<String, String> cas = new RedisCheckAndSet<String, String>(pool, 1, TimeUnit.SECONDS);
+        try {
+            cas.execute(new RedisCheckAndSet.Operation<String, String>() {
+                @Override
+                public void run(RedisConnection<String, String> conn, RedisTransaction<String, String> tx) {
+                    tx.set(key, value);
+                    tx.rpush("list");
+                }
+            }, key);
+            fail("aborted transaction committed");
+        } catch (RedisException e) {
+            assertTrue(e.getMessage().startsWith("EXECABORT"));
+        }
+        assertEquals(1, cas.getAttempts());
+        assertEquals(0, cas.getCommits());
+        assertEquals(0, cas.getConflicts());
+        assertNull(redis.get(key));
+        pool.close();
+    }
+
     @Test
     public void unwatch() throws Exception {
         assertEquals("OK", redis.unwatch());
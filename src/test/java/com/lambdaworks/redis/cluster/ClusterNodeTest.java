@@ -0,0 +1,48 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.cluster;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ClusterNodeTest {
+    @Test
+    public void parse() throws Exception {
+        String nodes =
+            "07c37dfeb235213a872192d90877d0cd55635b91 127.0.0.1:30004@31004 slave e7d1eecce10fd6bb5eb35b9f99a514335d9ba9ca 0 1426238317239 4 connected\n" +
+            "e7d1eecce10fd6bb5eb35b9f99a514335d9ba9ca 127.0.0.1:30001@31001 myself,master - 0 0 1 connected 0-5460\n" +
+            "67ed2db8d677e59ec4a4cefb06858cf2a1a89fa1 127.0.0.1:30002 master - 0 1426238316232 2 connected 5461-10922 10923 [10924->-292f8b365bb7edb5e285caf0b7e6ddc7265a2f4f]\n" +
+            "292f8b365bb7edb5e285caf0b7e6ddc7265a2f4f 127.0.0.1:30003 master,fail - 0 1426238318243 3 connected\n";
+
+        List<ClusterNode> list = ClusterNode.parse(nodes, "localhost");
+        assertEquals(4, list.size());
+
+        ClusterNode slave = list.get(0);
+        assertFalse(slave.isMaster());
+        assertEquals("127.0.0.1:30004", slave.getAddress());
+        assertTrue(slave.getSlots().isEmpty());
+
+        ClusterNode master = list.get(1);
+        assertTrue(master.isMaster());
+        assertEquals("e7d1eecce10fd6bb5eb35b9f99a514335d9ba9ca", master.getId());
+        assertEquals(5461, master.getSlots().cardinality());
+
+        ClusterNode other = list.get(2);
+        assertEquals(30002, other.getPort());
+        assertTrue(other.getSlots().get(10923));
+        assertFalse(other.getSlots().get(10924));
+        assertEquals(5463, other.getSlots().cardinality());
+
+        assertFalse(list.get(3).isMaster());
+    }
+
+    @Test
+    public void parseUnknownHost() throws Exception {
+        String nodes = "e7d1eecce10fd6bb5eb35b9f99a514335d9ba9ca :6379 myself,master - 0 0 0 connected\n";
+        List<ClusterNode> list = ClusterNode.parse(nodes, "localhost");
+        assertEquals("localhost:6379", list.get(0).getAddress());
+    }
+}
@@ -0,0 +1,43 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.cluster;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class SlotHashTest {
+    protected Charset charset = Charset.forName("UTF-8");
+
+    @Test
+    public void crc16() throws Exception {
+        byte[] bytes = bytes("123456789");
+        assertEquals(0x31c3, SlotHash.crc16(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void slot() throws Exception {
+        assertEquals(12182, SlotHash.slot(bytes("foo")));
+        assertEquals(5061, SlotHash.slot(bytes("bar")));
+    }
+
+    @Test
+    public void hashTag() throws Exception {
+        assertEquals(SlotHash.slot(bytes("user1000")), SlotHash.slot(bytes("{user1000}.following")));
+        assertEquals(SlotHash.slot(bytes("{user1000}.following")), SlotHash.slot(bytes("{user1000}.followers")));
+        assertEquals(SlotHash.slot(bytes("bar")), SlotHash.slot(bytes("foo{bar}{zap}")));
+        assertEquals(SlotHash.slot(bytes("{bar")), SlotHash.slot(bytes("foo{{bar}}zap")));
+    }
+
+    @Test
+    public void emptyHashTag() throws Exception {
+        byte[] key = bytes("foo{}{bar}");
+        assertEquals(SlotHash.crc16(key, 0, key.length) & 16383, SlotHash.slot(key));
+    }
+
+    protected byte[] bytes(String s) {
+        return s.getBytes(charset);
+    }
+}
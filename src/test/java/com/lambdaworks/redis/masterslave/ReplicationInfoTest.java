@@ -0,0 +1,68 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.masterslave;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ReplicationInfoTest {
+    @Test
+    public void master() throws Exception {
+        ReplicationInfo info = new ReplicationInfo(
+            "# Replication\r\n" +
+            "role:master\r\n" +
+            "connected_slaves:3\r\n" +
+            "slave0:ip=10.0.0.2,port=6379,state=online,offset=1234,lag=0\r\n" +
+            "slave1:ip=10.0.0.3,port=6380,state=wait_bgsave,offset=0,lag=0\r\n" +
+            "slave2:10.0.0.4,6381,online\r\n");
+        assertTrue(info.isMaster());
+        assertNull(info.getMaster());
+        assertEquals(Arrays.asList("10.0.0.2:6379", "10.0.0.4:6381"), info.getReplicas());
+    }
+
+    @Test
+    public void replica() throws Exception {
+        ReplicationInfo info = new ReplicationInfo(
+            "# Replication\r\n" +
+            "role:slave\r\n" +
+            "master_host:10.0.0.1\r\n" +
+            "master_port:6379\r\n" +
+            "master_link_status:up\r\n" +
+            "master_last_io_seconds_ago:3\r\n");
+        assertFalse(info.isMaster());
+        assertEquals("10.0.0.1:6379", info.getMaster());
+        assertTrue(info.isLinkUp());
+        assertEquals(3, info.getLastIoSeconds());
+        assertTrue(info.getReplicas().isEmpty());
+    }
+
+    @Test
+    public void linkDown() throws Exception {
+        ReplicationInfo info = new ReplicationInfo("role:slave\nmaster_link_status:down\n");
+        assertFalse(info.isLinkUp());
+        assertEquals(-1, info.getLastIoSeconds());
+    }
+
+    @Test
+    public void subSecondLag() throws Exception {
+        ReplicationInfo fresh  = replica(0);
+        ReplicationInfo behind = replica(1);
+        assertTrue(RedisMasterSlaveConnection.isHealthy(fresh, 500));
+        assertFalse(RedisMasterSlaveConnection.isHealthy(behind, 500));
+        assertTrue(RedisMasterSlaveConnection.isHealthy(behind, 1000));
+        assertTrue(RedisMasterSlaveConnection.isHealthy(behind, 0));
+    }
+
+    private ReplicationInfo replica(long lastIo) {
+        return new ReplicationInfo(
+            "# Replication\r\n" +
+            "role:slave\r\n" +
+            "master_host:10.0.0.1\r\n" +
+            "master_port:6379\r\n" +
+            "master_link_status:up\r\n" +
+            "master_last_io_seconds_ago:" + lastIo + "\r\n");
+    }
+}
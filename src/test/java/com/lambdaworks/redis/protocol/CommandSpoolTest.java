@@ -0,0 +1,88 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.protocol;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+import com.lambdaworks.redis.output.StatusOutput;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class CommandSpoolTest {
+    protected RedisCodec<String, String> codec = new Utf8StringCodec();
+    protected Charset charset = Charset.forName("UTF-8");
+    protected File file;
+    protected CommandSpool spool;
+
+    @Before
+    public final void createSpool() throws Exception {
+        file  = File.createTempFile("lettuce", ".spool");
+        spool = new CommandSpool(file, 128, 1);
+    }
+
+    @After
+    public final void closeSpool() throws Exception {
+        spool.close();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void encode() throws Exception {
+        Command<String, String, String> cmd = set("key", "value");
+        assertTrue(cmd.spool(spool));
+        assertEquals(1, spool.size());
+        assertEquals("*3\r\n$3\r\nSET\r\n$3\r\nkey\r\n$5\r\nvalue\r\n", encode(cmd));
+        assertEquals("*3\r\n$3\r\nSET\r\n$3\r\nkey\r\n$5\r\nvalue\r\n", encode(cmd));
+    }
+
+    @Test
+    public void accepts() throws Exception {
+        assertFalse(spool.accepts(set("key", "value"), 0));
+        assertTrue(spool.accepts(set("key", "value"), 1));
+        Command<String, String, String> get = command(CommandType.GET, new CommandArgs<String, String>(codec).addKey("key"));
+        assertFalse(spool.accepts(get, 1));
+    }
+
+    @Test
+    public void full() throws Exception {
+        assertTrue(set("key", "value").spool(spool));
+        Command<String, String, String> cmd = set("key", "a value that is too large to fit in the space remaining in the spool file");
+        assertFalse(cmd.spool(spool));
+        assertEquals(1, spool.size());
+        assertTrue(encode(cmd).endsWith("a value that is too large to fit in the space remaining in the spool file\r\n"));
+    }
+
+    @Test
+    public void release() throws Exception {
+        Command<String, String, String> cmd1 = set("key1", "value");
+        Command<String, String, String> cmd2 = set("key2", "value");
+        assertTrue(cmd1.spool(spool));
+        assertTrue(cmd2.spool(spool));
+        cmd1.complete();
+        cmd2.unspool();
+        assertEquals(0, spool.size());
+        assertTrue(set("key3", "a value that only fits once the spool file has been rewound").spool(spool));
+    }
+
+    protected Command<String, String, String> set(String key, String value) {
+        return command(CommandType.SET, new CommandArgs<String, String>(codec).addKey(key).addValue(value));
+    }
+
+    protected Command<String, String, String> command(CommandType type, CommandArgs<String, String> args) {
+        return new Command<String, String, String>(type, new StatusOutput<String, String>(codec), args, false);
+    }
+
+    protected String encode(Command<String, String, String> cmd) {
+        ByteBuf buf = Unpooled.buffer();
+        cmd.encode(buf);
+        return buf.toString(charset);
+    }
+}
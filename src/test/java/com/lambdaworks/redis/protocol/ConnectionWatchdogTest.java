@@ -0,0 +1,38 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.protocol;
+
+import io.netty.channel.local.LocalAddress;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static com.lambdaworks.redis.protocol.ConnectionWatchdog.isSameAddress;
+import static org.junit.Assert.*;
+
+public class ConnectionWatchdogTest {
+    private InetSocketAddress remote = new InetSocketAddress("127.0.0.1", 6379);
+
+    @Test
+    public void sameResolvedAddress() throws Exception {
+        assertTrue(isSameAddress(new InetSocketAddress("127.0.0.1", 6379), remote));
+        assertFalse(isSameAddress(new InetSocketAddress("127.0.0.2", 6379), remote));
+        assertFalse(isSameAddress(new InetSocketAddress("127.0.0.1", 6380), remote));
+    }
+
+    @Test
+    public void sameUnresolvedAddress() throws Exception {
+        assertTrue(isSameAddress(InetSocketAddress.createUnresolved("127.0.0.1", 6379), remote));
+        assertFalse(isSameAddress(InetSocketAddress.createUnresolved("127.0.0.2", 6379), remote));
+        assertFalse(isSameAddress(InetSocketAddress.createUnresolved("127.0.0.1", 6380), remote));
+        assertFalse(isSameAddress(InetSocketAddress.createUnresolved("unknown.invalid", 6379), remote));
+    }
+
+    @Test
+    public void sameOtherAddress() throws Exception {
+        assertTrue(isSameAddress(new LocalAddress("redis"), new LocalAddress("redis")));
+        assertFalse(isSameAddress(new LocalAddress("redis"), new LocalAddress("other")));
+        assertFalse(isSameAddress(new LocalAddress("redis"), remote));
+        assertFalse(isSameAddress(remote, null));
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.protocol;
+
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+import com.lambdaworks.redis.output.IntegerOutput;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FanOutCommandTest {
+    protected RedisCodec<String, String> codec = new Utf8StringCodec();
+    protected FanOutCommand<String, String, Long, Long> command;
+
+    @Before
+    public final void createCommand() throws Exception {
+        command = new FanOutCommand<String, String, Long, Long>(CommandType.DEL, new IntegerOutput<String, String>(codec), 2) {
+            private long count;
+
+            @Override
+            protected void merge(int index, Long value) {
+                count += value;
+            }
+
+            @Override
+            protected void finish() {
+                output.set(count);
+            }
+        };
+    }
+
+    @Test
+    public void merge() throws Exception {
+        Command<String, String, Long> part1 = command.join(0, part());
+        Command<String, String, Long> part2 = command.join(1, part());
+        part1.getOutput().set(2);
+        part1.complete();
+        assertFalse(command.await(10, TimeUnit.MILLISECONDS));
+        part2.getOutput().set(3);
+        part2.complete();
+        assertTrue(command.await(1, TimeUnit.SECONDS));
+        assertEquals(5L, (long) command.get());
+    }
+
+    @Test
+    public void partialFailure() throws Exception {
+        Command<String, String, Long> part1 = command.join(0, part());
+        Command<String, String, Long> part2 = command.join(1, part());
+        part1.getOutput().set(2);
+        part1.complete();
+        part2.getOutput().setError("ERR down");
+        part2.complete();
+        assertTrue(command.await(1, TimeUnit.SECONDS));
+        assertEquals(2L, (long) command.get());
+        assertEquals("1 of 2 parts of DEL failed; ERR down", command.getOutput().getError());
+    }
+
+    protected Command<String, String, Long> part() {
+        return new Command<String, String, Long>(CommandType.DEL, new IntegerOutput<String, String>(codec), null, false);
+    }
+}
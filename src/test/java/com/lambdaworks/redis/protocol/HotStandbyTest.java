@@ -0,0 +1,123 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.protocol;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.codec.RedisCodec;
+import com.lambdaworks.redis.codec.Utf8StringCodec;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoopGroup;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.HashedWheelTimer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HotStandbyTest {
+    protected RedisCodec<String, String> codec = new Utf8StringCodec();
+
+    private EventLoopGroup group;
+    private HashedWheelTimer timer;
+    private Channel server;
+    private BlockingQueue<Channel> accepted;
+    private BlockingQueue<String> received;
+    private HotStandby<String, String> standby;
+
+    @Before
+    public void startServer() throws Exception {
+        group    = new LocalEventLoopGroup();
+        timer    = new HashedWheelTimer();
+        accepted = new LinkedBlockingQueue<Channel>();
+        received = new LinkedBlockingQueue<String>();
+
+        server = new ServerBootstrap().group(group).channel(LocalServerChannel.class).childHandler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) throws Exception {
+                accepted.add(ch);
+                ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                        ByteBuf buf = (ByteBuf) msg;
+                        received.add(buf.toString(Charsets.ASCII));
+                        buf.release();
+                    }
+                });
+            }
+        }).bind(new LocalAddress("standby")).sync().channel();
+
+        Bootstrap bootstrap = new Bootstrap().group(group).channel(LocalChannel.class).remoteAddress(new LocalAddress("standby"));
+        RedisAsyncConnection<String, String> connection = new RedisAsyncConnection<String, String>(
+            new LinkedBlockingQueue<Command<String, String, ?>>(), codec, 1, TimeUnit.SECONDS);
+        standby = new HotStandby<String, String>(bootstrap, new ChannelInboundHandlerAdapter(), timer, connection, codec, 1, TimeUnit.HOURS);
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        standby.close();
+        server.close().sync();
+        timer.stop();
+        group.shutdownGracefully().sync();
+    }
+
+    @Test
+    public void notPromotedWhilePingInFlight() throws Exception {
+        standby.start();
+        Channel peer = accepted.poll(1, TimeUnit.SECONDS);
+        assertNotNull(peer);
+        assertTrue(awaitPing(peer));
+        assertFalse(standby.isReady());
+
+        pong(peer);
+        assertTrue(standby.isReady());
+
+        standby.run(null);
+        assertTrue(received.poll(1, TimeUnit.SECONDS).contains("PING"));
+        assertFalse(standby.isReady());
+        assertFalse(standby.promote());
+
+        pong(peer);
+        assertTrue(standby.promote());
+    }
+
+    /**
+     * Read commands up to a PING and answer the SCRIPT LOADs of the handshake
+     * sent before it.
+     */
+    private boolean awaitPing(Channel peer) throws Exception {
+        StringBuilder sent = new StringBuilder();
+        String next;
+        while (sent.indexOf("PING") < 0 && (next = received.poll(1, TimeUnit.SECONDS)) != null) {
+            sent.append(next);
+        }
+
+        StringBuilder replies = new StringBuilder();
+        for (int i = sent.indexOf("SCRIPT"); i >= 0; i = sent.indexOf("SCRIPT", i + 1)) {
+            replies.append("+OK\r\n");
+        }
+        if (replies.length() > 0) {
+            peer.writeAndFlush(Unpooled.copiedBuffer(replies, Charsets.ASCII)).sync();
+        }
+
+        return sent.indexOf("PING") >= 0;
+    }
+
+    private void pong(Channel peer) throws Exception {
+        peer.writeAndFlush(Unpooled.copiedBuffer("+PONG\r\n", Charsets.ASCII)).sync();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!standby.isReady() && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+    }
+}
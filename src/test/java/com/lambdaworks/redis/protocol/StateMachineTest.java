@@ -2,7 +2,9 @@
 
 package com.lambdaworks.redis.protocol;
 
+import com.lambdaworks.redis.KeyValue;
 import com.lambdaworks.redis.RedisException;
+import com.lambdaworks.redis.ScanResult;
 import com.lambdaworks.redis.codec.RedisCodec;
 import com.lambdaworks.redis.codec.Utf8StringCodec;
 import com.lambdaworks.redis.output.*;
@@ -66,6 +68,56 @@ public class StateMachineTest {
         assertEquals(Arrays.asList(null, "ok"), output.get());
     }
 
+    @Test
+    public void scan() throws Exception {
+        CommandOutput<String, String, ScanResult<KeyValue<String, String>>> output = new KeyValueScanOutput<String, String>(codec);
+        ByteBuf buffer = buffer("*2\r\n$2\r\n17\r\n*4\r\n$1\r\na\r\n$1\r\n1\r\n$1\r\nb\r\n$1\r\n2\r\n");
+        assertTrue(rsm.decode(buffer, output));
+        assertEquals("17", output.get().getCursor());
+        assertFalse(output.get().isFinished());
+        assertEquals(Arrays.asList(new KeyValue<String, String>("a", "1"), new KeyValue<String, String>("b", "2")), output.get().getValues());
+    }
+
+    @Test
+    public void exec() throws Exception {
+        MultiOutput<String, String> output = new MultiOutput<String, String>(codec);
+        Command<String, String, String> set = queued(output, new StatusOutput<String, String>(codec));
+        Command<String, String, Long> lpop = queued(output, new IntegerOutput<String, String>(codec));
+        assertTrue(rsm.decode(buffer("*2\r\n+OK\r\n-WRONGTYPE\r\n"), output));
+        assertEquals("OK", set.get());
+        assertEquals("WRONGTYPE", lpop.getOutput().getError());
+        assertEquals(2, output.get().size());
+        assertFalse(output.hasError());
+    }
+
+    @Test
+    public void execAbort() throws Exception {
+        MultiOutput<String, String> output = new MultiOutput<String, String>(codec);
+        Command<String, String, String> set = queued(output, new StatusOutput<String, String>(codec));
+        Command<String, String, Long> rpush = new Command<String, String, Long>(CommandType.RPUSH, new IntegerOutput<String, String>(codec), null, true);
+        output.add(rpush);
+        rpush.getOutput().setError("ERR wrong number of arguments");
+        rpush.complete();
+
+        assertTrue(rsm.decode(buffer("-EXECABORT\r\n"), output));
+        assertEquals("EXECABORT", output.getError());
+        assertTrue(set.isDone());
+        assertEquals("EXECABORT", set.getOutput().getError());
+        assertTrue(rpush.isDone());
+        assertEquals("ERR wrong number of arguments", rpush.getOutput().getError());
+    }
+
+    @Test
+    public void execWatchAbort() throws Exception {
+        MultiOutput<String, String> output = new MultiOutput<String, String>(codec);
+        Command<String, String, String> set = queued(output, new StatusOutput<String, String>(codec));
+        assertTrue(rsm.decode(buffer("*-1\r\n"), output));
+        assertTrue(output.isAborted());
+        assertFalse(output.hasError());
+        assertTrue(set.isDone());
+        assertNull(set.get());
+    }
+
     @Test
     public void partialFirstLine() throws Exception {
         assertFalse(rsm.decode(buffer("+"), output));
@@ -85,6 +137,13 @@ public class StateMachineTest {
         assertEquals(State.Type.SINGLE, State.Type.valueOf("SINGLE"));
     }
 
+    private <T> Command<String, String, T> queued(MultiOutput<String, String> multi, CommandOutput<String, String, T> output) {
+        Command<String, String, T> cmd = new Command<String, String, T>(CommandType.SET, output, null, true);
+        multi.add(cmd);
+        cmd.complete();
+        return cmd;
+    }
+
     protected ByteBuf buffer(String content) {
         return Unpooled.copiedBuffer(content, charset);
     }
@@ -0,0 +1,221 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.sentinel;
+
+import com.lambdaworks.redis.RedisConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.lambdaworks.redis.sentinel.RedisSentinelClient.switchMaster;
+import static org.junit.Assert.*;
+
+public class RedisSentinelClientTest {
+    private FakeServer one;
+    private FakeServer two;
+    private FakeServer sentinel;
+    private RedisSentinelClient client;
+
+    @Before
+    public void startServers() throws Exception {
+        one      = new FakeServer("one");
+        two      = new FakeServer("two");
+        sentinel = new FakeServer("sentinel");
+        sentinel.master = one.port;
+        client = new RedisSentinelClient("mymaster", "127.0.0.1", sentinel.port);
+        client.setDefaultTimeout(1, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void stopServers() throws Exception {
+        client.shutdown();
+        one.close();
+        two.close();
+        sentinel.close();
+    }
+
+    @Test
+    public void parseSwitchMaster() throws Exception {
+        String[] address = switchMaster("mymaster", "mymaster 10.0.0.1 6379 10.0.0.2 6380");
+        assertArrayEquals(new String[] { "10.0.0.2", "6380" }, address);
+        assertNull(switchMaster("mymaster", "other 10.0.0.1 6379 10.0.0.2 6380"));
+        assertNull(switchMaster("mymaster", "mymaster 10.0.0.1 6379"));
+    }
+
+    @Test
+    public void failover() throws Exception {
+        RedisConnection<String, String> connection = client.connect();
+        assertEquals("127.0.0.1:" + one.port, client.getMaster());
+        assertEquals("one", connection.ping());
+        sentinel.awaitSubscriber();
+
+        sentinel.publish("other 127.0.0.1 " + one.port + " 127.0.0.1 " + two.port);
+        assertEquals("one", connection.ping());
+
+        sentinel.master = two.port;
+        sentinel.publish("mymaster 127.0.0.1 " + one.port + " 127.0.0.1 " + two.port);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String reply = connection.ping();
+        while (!"two".equals(reply) && System.nanoTime() < deadline) {
+            reply = connection.ping();
+        }
+        assertEquals("two", reply);
+        assertEquals("127.0.0.1:" + two.port, client.getMaster());
+        connection.close();
+    }
+
+    @Test
+    public void unchangedMasterNotReconnected() throws Exception {
+        RedisConnection<String, String> connection = client.connect();
+        assertEquals("one", connection.ping());
+        sentinel.awaitSubscriber();
+
+        sentinel.publish("mymaster 127.0.0.1 " + two.port + " localhost " + one.port);
+        sentinel.publish("other 127.0.0.1 " + one.port + " 127.0.0.1 " + two.port);
+        assertEquals("one", connection.ping());
+        assertEquals(1, one.accepted());
+        connection.close();
+    }
+
+    @Test
+    public void nextSentinel() throws Exception {
+        FakeServer backup = new FakeServer("backup");
+        try {
+            backup.master = two.port;
+            client.addSentinel("127.0.0.1", backup.port);
+            client.setCheckInterval(250, TimeUnit.MILLISECONDS);
+
+            RedisConnection<String, String> connection = client.connect();
+            assertEquals("one", connection.ping());
+            sentinel.awaitSubscriber();
+
+            sentinel.close();
+            backup.awaitSubscriber();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!client.getMaster().endsWith(":" + two.port) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("127.0.0.1:" + two.port, client.getMaster());
+            connection.close();
+        } finally {
+            backup.close();
+        }
+    }
+
+    /**
+     * A server that answers SENTINEL get-master-addr-by-name with the address
+     * of the master, SUBSCRIBE with a subscription and other commands with
+     * its name as status reply.
+     */
+    private static class FakeServer implements Runnable {
+        private String name;
+        private ServerSocket server;
+        private int port;
+        private volatile int master;
+        private List<Socket> accepted;
+        private OutputStream subscriber;
+
+        FakeServer(String name) throws IOException {
+            this.name     = name;
+            this.server   = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            this.port     = server.getLocalPort();
+            this.accepted = new ArrayList<Socket>();
+            start(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Socket socket = server.accept();
+                    synchronized (this) {
+                        accepted.add(socket);
+                    }
+                    start(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+
+        synchronized int accepted() {
+            return accepted.size();
+        }
+
+        synchronized void awaitSubscriber() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (subscriber == null && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            assertNotNull(subscriber);
+        }
+
+        synchronized void publish(String message) throws IOException {
+            subscriber.write(("*3\r\n" + bulk("message") + bulk("+switch-master") + bulk(message)).getBytes("UTF-8"));
+            subscriber.flush();
+        }
+
+        synchronized void close() throws IOException {
+            server.close();
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                OutputStream out = socket.getOutputStream();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    List<String> args = new ArrayList<String>();
+                    for (int i = Integer.parseInt(line.substring(1)); i > 0; i--) {
+                        in.readLine();
+                        args.add(in.readLine());
+                    }
+                    synchronized (this) {
+                        out.write(reply(args, out).getBytes("UTF-8"));
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+
+        private String reply(List<String> args, OutputStream out) {
+            String command = args.get(0).toUpperCase();
+            if (command.equals("SENTINEL")) {
+                return "*2\r\n" + bulk("127.0.0.1") + bulk(String.valueOf(master));
+            } else if (command.equals("SUBSCRIBE")) {
+                subscriber = out;
+                notifyAll();
+                return "*3\r\n" + bulk("subscribe") + bulk(args.get(1)) + ":1\r\n";
+            }
+            return "+" + name + "\r\n";
+        }
+
+        private static String bulk(String value) {
+            return "$" + value.length() + "\r\n" + value + "\r\n";
+        }
+
+        private static void start(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}
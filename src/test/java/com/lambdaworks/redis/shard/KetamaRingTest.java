@@ -0,0 +1,81 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.redis.shard;
+
+import com.lambdaworks.redis.RedisException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class KetamaRingTest {
+    protected Charset charset = Charset.forName("UTF-8");
+    protected KetamaRing<String> ring;
+
+    @Before
+    public final void createRing() throws Exception {
+        ring = new KetamaRing<String>();
+        ring.add("a:6379", "a", 1);
+        ring.add("b:6379", "b", 1);
+        ring.add("c:6379", "c", 1);
+    }
+
+    @Test
+    public void distribution() throws Exception {
+        Map<String, Integer> counts = count(30000);
+        for (String node : ring.nodes()) {
+            assertTrue(counts.get(node) > 7000);
+            assertTrue(counts.get(node) < 13000);
+        }
+    }
+
+    @Test
+    public void weight() throws Exception {
+        ring.add("c:6379", "c", 2);
+        Map<String, Integer> counts = count(30000);
+        assertTrue(counts.get("c") > counts.get("a") + counts.get("a") / 2);
+    }
+
+    @Test
+    public void stable() throws Exception {
+        Map<Integer, String> before = new HashMap<Integer, String>();
+        for (int i = 0; i < 1000; i++) {
+            before.put(i, ring.get(bytes("key" + i)));
+        }
+        ring.add("d:6379", "d", 1);
+        for (int i = 0; i < 1000; i++) {
+            String node = ring.get(bytes("key" + i));
+            assertTrue(node.equals(before.get(i)) || node.equals("d"));
+        }
+    }
+
+    @Test
+    public void hashTag() throws Exception {
+        assertEquals(ring.get(bytes("user1000")), ring.get(bytes("{user1000}.following")));
+        assertEquals(ring.get(bytes("{user1000}.followers")), ring.get(bytes("{user1000}.following")));
+        assertArrayEquals(bytes("foo{}"), KetamaRing.hashTag(bytes("foo{}")));
+    }
+
+    @Test(expected = RedisException.class)
+    public void empty() throws Exception {
+        new KetamaRing<String>().get(bytes("key"));
+    }
+
+    protected Map<String, Integer> count(int keys) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < keys; i++) {
+            String node = ring.get(bytes("key" + i));
+            Integer n = counts.get(node);
+            counts.put(node, n == null ? 1 : n + 1);
+        }
+        return counts;
+    }
+
+    protected byte[] bytes(String s) {
+        return s.getBytes(charset);
+    }
+}